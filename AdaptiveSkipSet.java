@@ -0,0 +1,208 @@
+package util;
+
+import java.util.*;
+/*Self-adjusting SkipSet
+ * HotNode<F> { F val; Node<F>[] nexts; Node<F>[] prevs; int hits; int epoch; int baseDepth; }
+ * Lookups count hits per node. A node whose recent hits reach 2^k grows one level per hit until it is
+ * k levels above its random depth. A clock hand sweeping row 1 shrinks one cooled node per lookup.
+ * Hits halve every epoch, which lasts as many lookups as the set has elements.
+ */
+
+public class AdaptiveSkipSet<E> extends SkipSet<E> {
+    class HotNode<F> extends Node<F> {
+        int hits;
+        int epoch;
+        final int baseDepth;
+        HotNode(F value) {
+            super(value);
+            baseDepth = size();
+        }
+
+        /**
+         * Copies n at depth, which becomes the random depth unless it is the depth of n.
+         */
+        HotNode(HotNode<F> n, int depth) {
+            super(n.value, depth);
+            hits = n.hits;
+            epoch = n.epoch;
+            baseDepth = depth == n.size() ? n.baseDepth : depth;
+        }
+    }
+
+    private static final int MAX_DEPTH = 32;
+    private static final int MIN_EPOCH_LENGTH = 64;
+    @SuppressWarnings("unchecked")
+    private transient Node<E>[] path = new Node[MAX_DEPTH];
+    private transient Node<E> hand;
+    private int epoch;
+    private int lookups;
+
+    public AdaptiveSkipSet() {
+    }
+
+    public AdaptiveSkipSet(Collection<? extends E> c) {
+        addAll(c);
+    }
+
+    //region Get
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        //Lookups reshape the towers, so they write.
+        beforeWrite();
+        Comparable<? super E> k = (Comparable<? super E>) o;
+        Node<E> curNode = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null) {
+                int cmp = k.compareTo(curNode.nextArr[i].value);
+                if (cmp > 0) {
+                    curNode = curNode.nextArr[i];
+                } else if (cmp < 0) {
+                    break;
+                } else {
+                    touch(curNode.nextArr[i]);
+                    return true;
+                }
+            }
+            path[i] = curNode;
+        }
+        sweep();
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E floor(E e) {
+        beforeWrite();
+        Comparable<? super E> k = (Comparable<? super E>) e;
+        Node<E> curNode = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null) {
+                int cmp = k.compareTo(curNode.nextArr[i].value);
+                if (cmp > 0) {
+                    curNode = curNode.nextArr[i];
+                } else if(cmp < 0) {
+                    break;
+                } else {
+                    touch(curNode.nextArr[i]);
+                    return e;
+                }
+            }
+            path[i] = curNode;
+        }
+        if(curNode == head) {
+            sweep();
+            return null;
+        }
+        touch(curNode);
+        return curNode.value;
+    }
+    //endregion
+
+    //region Add
+    @Override
+    Node<E> newNode(E e) {
+        HotNode<E> n = new HotNode<>(e);
+        n.epoch = epoch;
+        return n;
+    }
+
+    @Override
+    Node<E> copyNode(Node<E> n, int depth) {
+        HotNode<E> copy = new HotNode<>((HotNode<E>) n, depth);
+        if(hand == n) {
+            hand = copy.size() > 1 ? copy : null;
+        }
+        return copy;
+    }
+    //endregion
+
+    //region Remove
+    @Override
+    public void remove(Node<E> n) {
+        if(hand == n) {
+            hand = n.nextArr[1];
+        }
+        super.remove(n);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        hand = null;
+    }
+
+    @Override
+    void beforeWrite() {
+        if(shared) {
+            hand = null;
+        }
+        super.beforeWrite();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public AdaptiveSkipSet<E> clone() {
+        AdaptiveSkipSet<E> clone = (AdaptiveSkipSet<E>) super.clone();
+        clone.path = new Node[MAX_DEPTH];
+        clone.hand = null;
+        return clone;
+    }
+    //endregion
+
+    //region Adapt
+    /**
+     * Records a hit on n, whose predecessor at row n.size() is path[n.size()], and grows n by at most one level.
+     */
+    private void touch(Node<E> n) {
+        HotNode<E> hot = (HotNode<E>) n;
+        hot.hits = hits(hot) + 1;
+        hot.epoch = epoch;
+        int depth = hot.size();
+        if(depth < MAX_DEPTH && depth < targetDepth(hot)) {
+            Node<E> prev = path[depth];
+            hot.nextArr = Arrays.copyOf(hot.nextArr, depth + 1);
+            hot.prevArr = Arrays.copyOf(hot.prevArr, depth + 1);
+            hot.nextArr[depth] = prev.nextArr[depth];
+            (prev.nextArr[depth] == null ? head : prev.nextArr[depth]).prevArr[depth] = hot;
+            hot.prevArr[depth] = prev == head ? null : prev;
+            prev.nextArr[depth] = hot;
+        }
+        sweep();
+    }
+
+    /**
+     * Advances the clock hand by one node on row 1, shrinking that node by one level if it has cooled.
+     */
+    private void sweep() {
+        if(++lookups >= Math.max(size, MIN_EPOCH_LENGTH)) {
+            lookups = 0;
+            epoch++;
+        }
+        Node<E> n = hand == null ? head.nextArr[1] : hand;
+        if(n == null) {
+            return;
+        }
+        hand = n.nextArr[1];
+        HotNode<E> hot = (HotNode<E>) n;
+        int depth = hot.size();
+        if(depth > hot.baseDepth && depth > targetDepth(hot)) {
+            int i = depth - 1;
+            (hot.prevArr[i] == null ? head : hot.prevArr[i]).nextArr[i] = hot.nextArr[i];
+            (hot.nextArr[i] == null ? head : hot.nextArr[i]).prevArr[i] = hot.prevArr[i];
+            hot.nextArr = Arrays.copyOf(hot.nextArr, i);
+            hot.prevArr = Arrays.copyOf(hot.prevArr, i);
+        }
+    }
+
+    private int hits(HotNode<E> n) {
+        int age = epoch - n.epoch;
+        return age >= Integer.SIZE ? 0 : n.hits >>> age;
+    }
+
+    private int targetDepth(HotNode<E> n) {
+        int hits = hits(n);
+        return n.baseDepth + (hits == 0 ? 0 : Integer.SIZE - 1 - Integer.numberOfLeadingZeros(hits));
+    }
+    //endregion
+}
@@ -0,0 +1,182 @@
+package util;
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+/*SkipMap with range aggregates
+ * AugEntry<K,V> { K key; V val; Entry[] nexts; Entry[] prevs; Object[] aggArr; }
+ * aggArr[i] is the aggregate of the values from the entry, inclusive, up to its next entry of row i, exclusive,
+ * the same spans as SkipList's distArr but folded with a user supplied associative combine instead of counted.
+ * Row i is folded from the row i - 1 aggregates it covers, so an update repairs one covering entry per row,
+ * and aggregate(from, to) takes the widest spans that fit, O(log n) of them.
+ */
+
+public class AugmentedSkipMap<K,V,A> extends SkipMap<K,V> {
+    class AugEntry extends Entry<K,V> {
+        final Object[] aggArr;
+
+        AugEntry(K key, V value, int depth) {
+            super(key, value, depth);
+            aggArr = new Object[depth];
+        }
+
+        AugEntry(K key, V value) {
+            super(key, value);
+            aggArr = new Object[size()];
+        }
+
+        /**
+         * Repairs the aggregates covering the entry, unless it has been removed from the map, e.g. by pollFirstEntry.
+         */
+        @Override
+        public V setValue(V value) {
+            V oldValue = super.setValue(value);
+            if(this != head && getEntry(key) == this) {
+                repair(this, null);
+            }
+            return oldValue;
+        }
+    }
+
+    private static final int MAX_DEPTH = 32;
+    private final Function<? super V, ? extends A> measure;
+    private final A identity;
+    private final BinaryOperator<A> combine;
+    private transient AugEntry created;
+
+    /**
+     * @param measure maps a value to its aggregate
+     * @param identity the aggregate of no values
+     * @param combine an associative operation on aggregates, applied in key order
+     */
+    public AugmentedSkipMap(Function<? super V, ? extends A> measure, A identity, BinaryOperator<A> combine) {
+        this.measure = measure;
+        this.identity = identity;
+        this.combine = combine;
+        AugEntry h = new AugEntry(null, null, MAX_DEPTH);
+        Arrays.fill(h.aggArr, identity);
+        head = h;
+    }
+
+    public static <K> AugmentedSkipMap<K,Long,Long> summingLong() {
+        return new AugmentedSkipMap<>(v -> v, 0L, Long::sum);
+    }
+
+    public static <K> AugmentedSkipMap<K,Long,Long> maxLong() {
+        return new AugmentedSkipMap<>(v -> v, Long.MIN_VALUE, Math::max);
+    }
+
+    public static <K> AugmentedSkipMap<K,Long,Long> minLong() {
+        return new AugmentedSkipMap<>(v -> v, Long.MAX_VALUE, Math::min);
+    }
+
+    //region Aggregate
+    /**
+     * @return the aggregate of the values with keys in [fromKey, toKey), a null bound being unbounded
+     */
+    @SuppressWarnings("unchecked")
+    public A aggregate(K fromKey, K toKey) {
+        Entry<K,V> x = fromKey == null ? head.nextArr[0] : ceilingEntry(fromKey);
+        if(x == null || (toKey != null && compare(x.key, toKey) >= 0)) {
+            return identity;
+        }
+        //The span past the last entry fits only if the last key is below toKey.
+        boolean tailFits = toKey == null || compare(head.prevArr[0].key, toKey) < 0;
+        A acc = identity;
+        while (x != null && (toKey == null || compare(x.key, toKey) < 0)) {
+            int i = x.size() - 1;
+            while (i > 0 && toKey != null && !(x.nextArr[i] == null ? tailFits : compare(x.nextArr[i].key, toKey) <= 0)) {
+                i--;
+            }
+            acc = combine.apply(acc, (A) ((AugEntry) x).aggArr[i]);
+            x = x.nextArr[i];
+        }
+        return acc;
+    }
+
+    /**
+     * @return the aggregate of every value
+     */
+    @SuppressWarnings("unchecked")
+    public A aggregate() {
+        return (A) ((AugEntry) head).aggArr[MAX_DEPTH - 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    /**
+     * Refolds the aggregates of every row bottom up from c, the last entry at or before the change,
+     * climbing to the entry covering it at each row. added, if not null, was just linked after c's
+     * position and needs its own aggregates folded first.
+     */
+    private void repair(Entry<K,V> c, AugEntry added) {
+        for (int i = 0; i < MAX_DEPTH; i++) {
+            while (c != head && c.size() <= i) {
+                Entry<K,V> prev = c.prevArr[c.size() - 1];
+                c = prev == null ? head : prev;
+            }
+            if(added != null && i < added.size()) {
+                fold(added, i);
+            }
+            fold((AugEntry) c, i);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fold(AugEntry x, int i) {
+        if(i == 0) {
+            x.aggArr[0] = x == head ? identity : measure.apply(x.value);
+            return;
+        }
+        A acc = (A) x.aggArr[i - 1];
+        Entry<K,V> end = x.nextArr[i];
+        for (Entry<K,V> y = x.nextArr[i - 1]; y != end; y = y.nextArr[i - 1]) {
+            acc = combine.apply(acc, (A) ((AugEntry) y).aggArr[i - 1]);
+        }
+        x.aggArr[i] = acc;
+    }
+    //endregion
+
+    //region Mutate
+    @Override
+    public V put(K key, V value) {
+        created = null;
+        V oldValue = super.put(key, value);
+        if(created != null) {
+            AugEntry n = created;
+            created = null;
+            repair(n.prevArr[0] == null ? head : n.prevArr[0], n);
+        }
+        return oldValue;
+    }
+
+    @Override
+    Entry<K,V> newEntry(K key, V value) {
+        created = new AugEntry(key, value);
+        return created;
+    }
+
+    @Override
+    void append(K key, V value) {
+        super.append(key, value);
+        AugEntry n = created;
+        created = null;
+        repair(n.prevArr[0] == null ? head : n.prevArr[0], n);
+    }
+
+    @Override
+    void remove(Entry<K,V> e) {
+        super.remove(e);
+        repair(e.prevArr[0] == null ? head : e.prevArr[0], null);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(((AugEntry) head).aggArr, identity);
+    }
+    //endregion
+}
@@ -0,0 +1,61 @@
+package util;
+
+import java.util.*;
+/*Capacity-bounded SkipMap
+ * Once full, a new key is admitted only if it lies beyond the boundary key on the eviction side,
+ * which is decided by one comparison against head.nextArr[0] or head.prevArr[0].
+ * The boundary entry is then unlinked through its own links without a search.
+ */
+
+public class BoundedSkipMap<K,V> extends SkipMap<K,V> {
+    private final int capacity;
+    private final BoundedSkipSet.Eviction eviction;
+
+    /**
+     * @param capacity the maximum number of entries
+     * @param eviction the side from which entries are evicted once the map is full
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public BoundedSkipMap(int capacity, BoundedSkipSet.Eviction eviction) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.eviction = Objects.requireNonNull(eviction);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public BoundedSkipSet.Eviction eviction() {
+        return eviction;
+    }
+
+    /**
+     * Replaces the value of a present key, or adds the entry if the map has room or the key lies beyond
+     * the boundary key, whose entry is then evicted. A key that is not admitted leaves the map unchanged.
+     * @return the previous value of the key, or null if it was absent
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if(size < capacity) {
+            return super.put(key, value);
+        }
+        Entry<K,V> boundary = eviction == BoundedSkipSet.Eviction.LOWEST ? head.nextArr[0] : head.prevArr[0];
+        int cmp = ((Comparable<? super K>) key).compareTo(boundary.key);
+        if(cmp == 0) {
+            return boundary.setValue(value);
+        }
+        if(eviction == BoundedSkipSet.Eviction.LOWEST ? cmp < 0 : cmp > 0) {
+            return null;
+        }
+        V oldValue = super.put(key, value);
+        if(size > capacity) {
+            remove(boundary);
+            size--;
+        }
+        return oldValue;
+    }
+}
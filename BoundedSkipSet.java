@@ -0,0 +1,64 @@
+package util;
+
+import java.util.*;
+/*Capacity-bounded SkipSet
+ * Once full, an element is admitted only if it lies beyond the boundary element on the eviction side,
+ * which is decided by one comparison against head.nextArr[0] or head.prevArr[0].
+ * The boundary is then unlinked through its own links without a search.
+ */
+
+public class BoundedSkipSet<E> extends SkipSet<E> {
+    public enum Eviction {
+        /** Keep the greatest elements, evicting the lowest. */
+        LOWEST,
+        /** Keep the least elements, evicting the highest. */
+        HIGHEST
+    }
+
+    private final int capacity;
+    private final Eviction eviction;
+
+    /**
+     * @param capacity the maximum number of elements
+     * @param eviction the side from which elements are evicted once the set is full
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public BoundedSkipSet(int capacity, Eviction eviction) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.eviction = Objects.requireNonNull(eviction);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public Eviction eviction() {
+        return eviction;
+    }
+
+    /**
+     * Adds the element if the set has room, or if it lies beyond the boundary element, which is then evicted.
+     * @return true if the element was admitted
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean add(E e) {
+        if(size < capacity) {
+            return super.add(e);
+        }
+        int cmp = ((Comparable<? super E>) e).compareTo(eviction == Eviction.LOWEST ? first() : last());
+        if(eviction == Eviction.LOWEST ? cmp <= 0 : cmp >= 0) {
+            return false;
+        }
+        if(!super.add(e)) {
+            return false;
+        }
+        //The boundary node is found after the add, which copies any towers shared with lazy clones.
+        remove(eviction == Eviction.LOWEST ? head.nextArr[0] : head.prevArr[0]);
+        size--;
+        return true;
+    }
+}
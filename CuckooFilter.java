@@ -0,0 +1,215 @@
+package util;
+
+import java.util.*;
+/*Cuckoo Filter
+ * Buckets of 4 16-bit fingerprints, each element having two candidate buckets, so a probe reads at most two
+ * adjacent slices of one short[]. Supports deletion of previously inserted elements.
+ * Elements are hashed by hashCode(), so ordered collections using it need compareTo consistent with equals.
+ */
+
+public class CuckooFilter implements java.io.Serializable {
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double MAX_LOAD = 0.9;
+
+    private final short[] table;
+    private final int mask;
+    private int count;
+    private boolean saturated;
+    private long probes;
+    private long negatives;
+    private long falsePositives;
+
+    /**
+     * @param expected the number of elements to size the filter for
+     */
+    public CuckooFilter(int expected) {
+        int buckets = Integer.highestOneBit(Math.max((int) (expected / (BUCKET_SIZE * MAX_LOAD)), 1));
+        if(buckets * BUCKET_SIZE * MAX_LOAD < expected) {
+            buckets <<= 1;
+        }
+        table = new short[buckets * BUCKET_SIZE];
+        mask = buckets - 1;
+    }
+
+    //region Hashing
+    private static long hash(Object o) {
+        long h = (o == null ? 0 : o.hashCode()) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+
+    private static short fingerprint(long hash) {
+        short fp = (short) (hash >>> 48);
+        return fp == 0 ? 1 : fp;
+    }
+
+    private int alternate(int bucket, short fp) {
+        return (bucket ^ (fp * 0x5BD1E995)) & mask;
+    }
+    //endregion
+
+    //region Operations
+    /**
+     * @param o the element to test
+     * @return false if the element was definitely not inserted, true if it may have been
+     */
+    public boolean mightContain(Object o) {
+        long h = hash(o);
+        short fp = fingerprint(h);
+        int b1 = (int) h & mask;
+        return bucketContains(b1, fp) || bucketContains(alternate(b1, fp), fp);
+    }
+
+    /**
+     * @param o the element to insert
+     * @return false if the filter is too full to take the element, in which case the filter must be rebuilt
+     *          with a greater capacity before it is used again
+     */
+    public boolean add(Object o) {
+        long h = hash(o);
+        short fp = fingerprint(h);
+        int b = (int) h & mask;
+        if(count >= table.length * MAX_LOAD) {
+            return false;
+        }
+        if(insert(b, fp) || insert(alternate(b, fp), fp)) {
+            count++;
+            return true;
+        }
+        for(int kicks = 0; kicks < MAX_KICKS; kicks++) {
+            int slot = b * BUCKET_SIZE + (kicks & (BUCKET_SIZE - 1));
+            short evicted = table[slot];
+            table[slot] = fp;
+            fp = evicted;
+            b = alternate(b, fp);
+            if(insert(b, fp)) {
+                count++;
+                return true;
+            }
+        }
+        //The last evicted fingerprint has nowhere to go, so this filter can no longer answer for it.
+        saturated = true;
+        return false;
+    }
+
+    /**
+     * @param o an element previously inserted
+     * @return true if a fingerprint for the element was removed
+     */
+    public boolean remove(Object o) {
+        long h = hash(o);
+        short fp = fingerprint(h);
+        int b1 = (int) h & mask;
+        if(delete(b1, fp) || delete(alternate(b1, fp), fp)) {
+            count--;
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        Arrays.fill(table, (short) 0);
+        count = 0;
+        saturated = false;
+    }
+
+    private boolean bucketContains(int bucket, short fp) {
+        int i = bucket * BUCKET_SIZE;
+        return table[i] == fp || table[i + 1] == fp || table[i + 2] == fp || table[i + 3] == fp;
+    }
+
+    private boolean insert(int bucket, short fp) {
+        for(int i = bucket * BUCKET_SIZE, end = i + BUCKET_SIZE; i < end; i++) {
+            if(table[i] == 0) {
+                table[i] = fp;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean delete(int bucket, short fp) {
+        for(int i = bucket * BUCKET_SIZE, end = i + BUCKET_SIZE; i < end; i++) {
+            if(table[i] == fp) {
+                table[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+    //endregion
+
+    //region Stats
+    /**
+     * @return true if an insertion failed and the filter must be rebuilt before it can be trusted
+     */
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    /**
+     * @return the number of fingerprints stored
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the number of elements the filter holds before it reports itself full
+     */
+    public int capacity() {
+        return (int) (table.length * MAX_LOAD);
+    }
+
+    /**
+     * @return the bytes used by the fingerprint table
+     */
+    public long memoryBytes() {
+        return (long) table.length * Short.BYTES;
+    }
+
+    /**
+     * @return the false positive rate expected at the current load, 2 * 4 * load / 2^16
+     */
+    public double expectedFalsePositiveRate() {
+        return 2.0 * BUCKET_SIZE * count / table.length / (1 << Short.SIZE);
+    }
+
+    /**
+     * @return the fraction of recorded misses that the filter failed to reject
+     */
+    public double observedFalsePositiveRate() {
+        return negatives == 0 ? 0 : (double) falsePositives / negatives;
+    }
+
+    /**
+     * @return the number of recorded probes
+     */
+    public long probes() {
+        return probes;
+    }
+
+    /**
+     * Records the outcome of a probe made by the owning collection.
+     * @param passed whether {@link #mightContain(Object)} returned true
+     * @param present whether the element was actually present
+     */
+    void record(boolean passed, boolean present) {
+        probes++;
+        if(!present) {
+            negatives++;
+            if(passed) {
+                falsePositives++;
+            }
+        }
+    }
+
+    void copyStats(CuckooFilter other) {
+        probes = other.probes;
+        negatives = other.negatives;
+        falsePositives = other.falsePositives;
+    }
+    //endregion
+}
@@ -0,0 +1,206 @@
+package util;
+
+import java.util.*;
+/*Deterministic 1-2-3 SkipSet
+ * Every gap, the run of nodes of depth d between two consecutive nodes of depth > d, holds 1 to 3 nodes.
+ * Nodes are inserted with depth 1, and towers grow or shrink one level at a time to restore the gaps,
+ * so searches take at most 4 steps per level and updates never draw random numbers.
+ */
+
+public class DeterministicSkipSet<E> extends SkipSet<E> {
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_GAP = 3;
+
+    public DeterministicSkipSet() {
+    }
+
+    public DeterministicSkipSet(Collection<? extends E> c) {
+        addAll(c);
+    }
+
+    //region Add
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean add(E e) {
+        Comparable<? super E> k = (Comparable<? super E>) e;
+        Node<E> curNode = predecessor(k);
+        if(curNode == null) {
+            return false;
+        }
+        if(shared) {
+            //The predecessor found is a shared node, which the copy replaces.
+            beforeWrite();
+            curNode = predecessor(k);
+        }
+        Node<E> n = new Node<>(e, 1);
+        link(curNode, n, 0);
+        size++;
+        split(boundary(n, 0), 0);
+        return true;
+    }
+
+    /**
+     * @return the last node before k on the bottom row, head if there is none, or null if k is present
+     */
+    private Node<E> predecessor(Comparable<? super E> k) {
+        Node<E> curNode = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null) {
+                int cmp = k.compareTo(curNode.nextArr[i].value);
+                if (cmp > 0) {
+                    curNode = curNode.nextArr[i];
+                } else if (cmp < 0) {
+                    break;
+                } else {
+                    return null;
+                }
+            }
+        }
+        return curNode;
+    }
+    //endregion
+
+    //region Remove
+    @Override
+    @SuppressWarnings("unchecked")
+    public void remove(Node<E> n) {
+        int depth = n.size();
+        //Left boundaries of the gaps n separates, and of the gap n belongs to.
+        Node<E>[] lefts = new Node[depth];
+        for(int i = 0; i < depth - 1; i++) {
+            lefts[i] = prev(n, i + 1);
+        }
+        lefts[depth - 1] = boundary(n, depth - 1);
+        for(int i = 0; i < depth; i++) {
+            unlink(n, i);
+        }
+        //The gaps on either side of n merge below its top level, and may need splitting again.
+        for(int i = 0; i < depth - 1; i++) {
+            split(lefts[i], i);
+        }
+        merge(lefts[depth - 1], depth - 1);
+    }
+    //endregion
+
+    //region Balance
+    private int depth(Node<E> n) {
+        return n == head ? Integer.MAX_VALUE : n.size();
+    }
+
+    private Node<E> prev(Node<E> n, int i) {
+        return n.prevArr[i] == null ? head : n.prevArr[i];
+    }
+
+    /**
+     * Returns the nearest node at or before n whose depth exceeds i + 1, i.e. the left boundary of n's gap at row i.
+     */
+    private Node<E> boundary(Node<E> n, int i) {
+        while (depth(n) <= i + 1) {
+            n = prev(n, i);
+        }
+        return n;
+    }
+
+    private void link(Node<E> prev, Node<E> n, int i) {
+        n.nextArr[i] = prev.nextArr[i];
+        (n.nextArr[i] == null ? head : n.nextArr[i]).prevArr[i] = n;
+        n.prevArr[i] = prev == head ? null : prev;
+        prev.nextArr[i] = n;
+    }
+
+    private void unlink(Node<E> n, int i) {
+        prev(n, i).nextArr[i] = n.nextArr[i];
+        (n.nextArr[i] == null ? head : n.nextArr[i]).prevArr[i] = n.prevArr[i];
+    }
+
+    /**
+     * Raises n by one level, linking it after the left boundary of its gap.
+     */
+    private void promote(Node<E> n) {
+        int i = n.size();
+        Node<E> prev = boundary(n, i - 1);
+        n.nextArr = Arrays.copyOf(n.nextArr, i + 1);
+        n.prevArr = Arrays.copyOf(n.prevArr, i + 1);
+        link(prev, n, i);
+    }
+
+    private void demote(Node<E> n) {
+        int i = n.size() - 1;
+        unlink(n, i);
+        n.nextArr = Arrays.copyOf(n.nextArr, i);
+        n.prevArr = Arrays.copyOf(n.prevArr, i);
+    }
+
+    /**
+     * Splits the gap after left at row i if it holds more than 3 nodes, then repeats for the row above.
+     */
+    private void split(Node<E> left, int i) {
+        for (; i < MAX_DEPTH - 1; i++) {
+            Node<E> right = left.nextArr[i + 1];
+            int count = 0;
+            for (Node<E> n = left.nextArr[i]; n != right; n = n.nextArr[i]) {
+                count++;
+            }
+            if (count <= MAX_GAP) {
+                return;
+            }
+            Node<E> mid = left.nextArr[i];
+            for (int j = count / 2; j > 0; j--) {
+                mid = mid.nextArr[i];
+            }
+            promote(mid);
+            left = boundary(left, i + 1);
+        }
+    }
+
+    /**
+     * Refills the gap after left at row i if it is empty, by borrowing a node from a sibling gap
+     * or by merging with it, in which case the row above may need refilling in turn.
+     */
+    private void merge(Node<E> left, int i) {
+        for (; i < MAX_DEPTH - 1 && left.nextArr[i] == left.nextArr[i + 1]; i++) {
+            Node<E> right = left.nextArr[i + 1];
+            if (right != null && depth(right) == i + 2) {
+                Node<E> first = right.nextArr[i];
+                if (first != right.nextArr[i + 1] && first.nextArr[i] != right.nextArr[i + 1]) {
+                    demote(right);
+                    promote(first);
+                    return;
+                }
+                demote(right);
+            } else if (left != head && depth(left) == i + 2) {
+                Node<E> outer = prev(left, i + 1);
+                Node<E> last = prev(left, i);
+                if (prev(last, i) != outer) {
+                    demote(left);
+                    promote(last);
+                    return;
+                }
+                demote(left);
+                left = outer;
+            } else {
+                //Both boundaries are taller, so row i + 1 is empty and row i is the top row.
+                return;
+            }
+            left = boundary(left, i + 1);
+        }
+    }
+
+    /**
+     * Compacts keeping the depths, which already bound every gap. Depths by rank can leave the last gaps empty.
+     */
+    @Override
+    public void compact(boolean rebalance) {
+        super.compact(false);
+    }
+
+    /**
+     * Inserts already link a single row and raise towers only to restore the gaps, so there is no index to defer.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void setIngestLevels(int levels) {
+        throw new UnsupportedOperationException();
+    }
+    //endregion
+}
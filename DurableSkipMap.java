@@ -0,0 +1,533 @@
+package util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+/*SkipMap with a write-ahead log
+ * Directory { checkpoint-<g>.dat: int count, (key, value)*; wal-<g>.log: (int length, int crc, byte kind, key[, value])* }
+ * Every mutation is appended to the log of the current generation g before it returns, and made durable
+ * according to the SyncPolicy. A checkpoint writes the whole map to checkpoint-<g+1>.dat, starts wal-<g+1>.log
+ * and deletes older files, so recovery reads one checkpoint and replays only the logs after it.
+ * Keys and values are written with Java serialization. Mutations lock the map, while readers racing
+ * with writers must synchronize on the map themselves.
+ */
+
+public class DurableSkipMap<K,V> extends SkipMap<K,V> implements Closeable {
+    public enum SyncPolicy {
+        /** Each mutation forces the log before returning, holding the map lock. */
+        PER_OP,
+        /** Each mutation forces the log before returning, and writers waiting together share one force. */
+        GROUP,
+        /** Mutations return once buffered, and the log is forced every interval. */
+        INTERVAL
+    }
+
+    class LoggedEntry extends Entry<K,V> {
+        LoggedEntry(K key, V value) {
+            super(key, value);
+        }
+
+        /**
+         * Logs the new value under the map lock like put(), unless the entry has been removed.
+         */
+        @Override
+        public V setValue(V value) {
+            V oldValue;
+            long lsn;
+            synchronized (DurableSkipMap.this) {
+                oldValue = super.setValue(value);
+                if(getEntry(key) != this) {
+                    return oldValue;
+                }
+                lsn = logged(PUT, key, value);
+            }
+            commit(lsn);
+            return oldValue;
+        }
+    }
+
+    private static final byte PUT = 0;
+    private static final byte REMOVE = 1;
+    private static final byte CLEAR = 2;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private final Path dir;
+    private final SyncPolicy policy;
+    private final long checkpointBytes;
+    private final ScheduledExecutorService syncer;
+    private long generation;
+    private volatile FileChannel channel;
+    private long logBytes;
+
+    //Guarded by logLock, which is taken inside the map lock but never the other way around.
+    private final Object logLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedLsn;
+    private long durableLsn;
+    private boolean flushing;
+    private IOException broken;
+
+    /**
+     * Opens the map stored in dir with GROUP commit, recovering it if present.
+     */
+    public DurableSkipMap(Path dir) throws IOException {
+        this(dir, SyncPolicy.GROUP, 0, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Opens the map stored in dir, recovering it if present.
+     * @param intervalMillis the period of forces under the INTERVAL policy
+     * @param checkpointBytes the log size past which a mutation checkpoints the map, or 0 for manual checkpoints
+     */
+    public DurableSkipMap(Path dir, SyncPolicy policy, long intervalMillis, long checkpointBytes) throws IOException {
+        if((policy == SyncPolicy.INTERVAL && intervalMillis <= 0) || checkpointBytes < 0) {
+            throw new IllegalArgumentException("Interval: " + intervalMillis + ", Checkpoint bytes: " + checkpointBytes);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.policy = policy;
+        this.checkpointBytes = checkpointBytes;
+        recover();
+        if(policy == SyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "DurableSkipMap-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    //region Mutate
+    @Override
+    public V put(K key, V value) {
+        V oldValue;
+        long lsn;
+        synchronized (this) {
+            oldValue = apply(key, value);
+            lsn = logged(PUT, key, value);
+        }
+        commit(lsn);
+        return oldValue;
+    }
+
+    /**
+     * Puts without logging, replacing the value of a present entry directly rather than through its logging setValue.
+     */
+    private V apply(K key, V value) {
+        Entry<K,V> e = getEntry(key);
+        if(e != null) {
+            V oldValue = e.value;
+            e.value = value;
+            return oldValue;
+        }
+        return super.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        V oldValue;
+        long lsn;
+        synchronized (this) {
+            int oldSize = size;
+            oldValue = super.remove(key);
+            lsn = size < oldSize ? logged(REMOVE, (K) key, null) : appended();
+        }
+        commit(lsn);
+        return oldValue;
+    }
+
+    @Override
+    public Entry<K,V> pollFirstEntry() {
+        Entry<K,V> e;
+        long lsn;
+        synchronized (this) {
+            e = super.pollFirstEntry();
+            lsn = e != null ? logged(REMOVE, e.key, null) : appended();
+        }
+        commit(lsn);
+        return e;
+    }
+
+    @Override
+    public Entry<K,V> pollLastEntry() {
+        Entry<K,V> e;
+        long lsn;
+        synchronized (this) {
+            e = super.pollLastEntry();
+            lsn = e != null ? logged(REMOVE, e.key, null) : appended();
+        }
+        commit(lsn);
+        return e;
+    }
+
+    @Override
+    public void clear() {
+        long lsn;
+        synchronized (this) {
+            super.clear();
+            lsn = logged(CLEAR, null, null);
+        }
+        commit(lsn);
+    }
+
+    @Override
+    Entry<K,V> newEntry(K key, V value) {
+        return new LoggedEntry(key, value);
+    }
+
+    /**
+     * Entries removed through the iterator are logged and committed like remove().
+     */
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> entries = super.entrySet();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K,V>> iterator() {
+                Iterator<Map.Entry<K,V>> it = entries.iterator();
+                return new Iterator<>() {
+                    Map.Entry<K,V> lastEntry;
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K,V> next() {
+                        lastEntry = it.next();
+                        return lastEntry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        long lsn;
+                        synchronized (DurableSkipMap.this) {
+                            it.remove();
+                            lsn = logged(REMOVE, lastEntry.getKey(), null);
+                        }
+                        commit(lsn);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+
+            @Override
+            public void clear() {
+                DurableSkipMap.this.clear();
+            }
+        };
+    }
+    //endregion
+
+    //region Log
+    /**
+     * Logs a mutation already applied to the map, checkpointing once the log is large enough.
+     * The caller holds the map lock, so a checkpoint includes the mutation before deleting the log holding it.
+     * @return the number of the record to commit
+     */
+    private long logged(byte kind, K key, V value) {
+        long lsn = log(kind, key, value);
+        if(checkpointBytes > 0 && logBytes >= checkpointBytes) {
+            checkpoint();
+        }
+        return lsn;
+    }
+
+    /**
+     * Buffers a record, forcing it at once under PER_OP.
+     */
+    private long log(byte kind, K key, V value) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(record)) {
+            out.writeByte(kind);
+            if(kind != CLEAR) {
+                out.writeObject(key);
+            }
+            if(kind == PUT) {
+                out.writeObject(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = record.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        long lsn;
+        synchronized (logLock) {
+            DataOutputStream out = new DataOutputStream(pending);
+            try {
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            lsn = ++appendedLsn;
+        }
+        logBytes += HEADER_BYTES + payload.length;
+        if(policy == SyncPolicy.PER_OP) {
+            flush(lsn);
+        }
+        return lsn;
+    }
+
+    private long appended() {
+        synchronized (logLock) {
+            return appendedLsn;
+        }
+    }
+
+    private void commit(long lsn) {
+        if(policy == SyncPolicy.GROUP) {
+            flush(lsn);
+        }
+    }
+
+    /**
+     * Forces every buffered mutation to the log.
+     */
+    public void sync() {
+        flush(appended());
+    }
+
+    /**
+     * Returns once the record numbered lsn is forced. The first waiter writes and forces everything buffered
+     * while the others wait for it, so writers arriving during a force share the next one.
+     * A failed write is truncated away and its batch put back in front of the buffer, so the next flush retries it.
+     * If even the truncation fails, the log may end in a torn record and every later flush fails.
+     */
+    private void flush(long lsn) {
+        byte[] batch;
+        long upTo;
+        synchronized (logLock) {
+            while (durableLsn < lsn && flushing) {
+                try {
+                    logLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted before the log was forced", e);
+                }
+            }
+            if(durableLsn >= lsn) {
+                return;
+            }
+            if(broken != null) {
+                throw new UncheckedIOException("Log failed", broken);
+            }
+            flushing = true;
+            batch = pending.toByteArray();
+            upTo = appendedLsn;
+            pending = new ByteArrayOutputStream();
+        }
+        FileChannel out = channel;
+        long start = -1;
+        IOException failure = null;
+        try {
+            start = out.position();
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            failure = e;
+        }
+        boolean torn = false;
+        if(failure != null && start >= 0) {
+            try {
+                out.truncate(start);
+                out.position(start);
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+                torn = true;
+            }
+        }
+        synchronized (logLock) {
+            flushing = false;
+            if(failure == null) {
+                durableLsn = upTo;
+            } else {
+                ByteArrayOutputStream restored = new ByteArrayOutputStream(batch.length + pending.size());
+                restored.writeBytes(batch);
+                restored.writeBytes(pending.toByteArray());
+                pending = restored;
+                if(torn) {
+                    broken = failure;
+                }
+            }
+            logLock.notifyAll();
+        }
+        if(failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+    //endregion
+
+    //region Checkpoint
+    /**
+     * Writes the map to a new checkpoint and starts a new log, deleting the files it supersedes.
+     */
+    public synchronized void checkpoint() {
+        sync();
+        long next = generation + 1;
+        Path tmp = dir.resolve("checkpoint-" + next + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                 ObjectOutputStream s = new ObjectOutputStream(new BufferedOutputStream(Channels.newOutputStream(out)))) {
+                s.writeInt(size);
+                for (Entry<K,V> e = head.nextArr[0]; e != null; e = e.nextArr[0]) {
+                    s.writeObject(e.key);
+                    s.writeObject(e.value);
+                }
+                s.flush();
+                out.force(true);
+            }
+            Files.move(tmp, checkpointPath(next), StandardCopyOption.ATOMIC_MOVE);
+            FileChannel old = channel;
+            channel = FileChannel.open(logPath(next), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            old.close();
+            generation = next;
+            logBytes = 0;
+            for (long g : generations("checkpoint-", ".dat")) {
+                if(g < next) {
+                    Files.deleteIfExists(checkpointPath(g));
+                }
+            }
+            for (long g : generations("wal-", ".log")) {
+                if(g < next) {
+                    Files.deleteIfExists(logPath(g));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the newest checkpoint by appending its sorted entries, then replays the logs after it,
+     * truncating a torn record at the end of the last one.
+     */
+    @SuppressWarnings("unchecked")
+    private void recover() throws IOException {
+        List<Long> checkpoints = generations("checkpoint-", ".dat");
+        generation = checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1);
+        if(!checkpoints.isEmpty()) {
+            try (ObjectInputStream s = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(checkpointPath(generation))))) {
+                for (int i = s.readInt(); i > 0; i--) {
+                    append((K) s.readObject(), (V) s.readObject());
+                }
+            } catch (ClassNotFoundException e) {
+                throw new InvalidObjectException(e.getMessage());
+            }
+        }
+        List<Long> logs = generations("wal-", ".log");
+        logs.removeIf(g -> g < generation);
+        for (long g : logs) {
+            generation = g;
+            logBytes = replay(logPath(g));
+        }
+        channel = FileChannel.open(logPath(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(logBytes);
+        channel.position(logBytes);
+    }
+
+    /**
+     * Applies the records of one log, returning the length of its intact prefix.
+     */
+    @SuppressWarnings("unchecked")
+    private long replay(Path log) throws IOException {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log)))) {
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if(length < 0) {
+                        return valid;
+                    }
+                    payload = in.readNBytes(length);
+                } catch (EOFException e) {
+                    return valid;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if(payload.length < length || (int) crc.getValue() != checksum) {
+                    return valid;
+                }
+                try (ObjectInputStream s = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+                    byte kind = s.readByte();
+                    if(kind == PUT) {
+                        apply((K) s.readObject(), (V) s.readObject());
+                    } else if(kind == REMOVE) {
+                        super.remove(s.readObject());
+                    } else {
+                        super.clear();
+                    }
+                } catch (ClassNotFoundException e) {
+                    throw new InvalidObjectException(e.getMessage());
+                }
+                valid += HEADER_BYTES + length;
+            }
+        }
+    }
+
+    private List<Long> generations(String prefix, String suffix) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private Path checkpointPath(long generation) {
+        return dir.resolve("checkpoint-" + generation + ".dat");
+    }
+
+    private Path logPath(long generation) {
+        return dir.resolve("wal-" + generation + ".log");
+    }
+    //endregion
+
+    /**
+     * Forces every buffered mutation and closes the log.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(syncer != null) {
+            syncer.shutdown();
+        }
+        try {
+            sync();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package util;
+
+import java.util.*;
+/*SkipMap with a CuckooFilter front
+ * get() and containsKey() answer definite misses from the filter without descending the towers.
+ * The filter is rebuilt from level 0 at twice the capacity whenever it fills up.
+ * Keys need hashCode() consistent with compareTo(), as for a HashMap holding the same keys.
+ */
+
+public class FilteredSkipMap<K,V> extends SkipMap<K,V> {
+    private static final int INITIAL_CAPACITY = 16;
+    private CuckooFilter filter = new CuckooFilter(INITIAL_CAPACITY);
+
+    public FilteredSkipMap() {
+    }
+
+    public FilteredSkipMap(Map<? extends K, ? extends V> m) {
+        putAll(m);
+    }
+
+    /**
+     * @return the membership filter, whose accessors report its load, memory use and false positive rate
+     */
+    public CuckooFilter filter() {
+        return filter;
+    }
+
+    @Override
+    Entry<K,V> getEntry(Object key) {
+        boolean passed = filter.mightContain(key);
+        Entry<K,V> e = passed ? super.getEntry(key) : null;
+        filter.record(passed, e != null);
+        return e;
+    }
+
+    /**
+     * Looks the key up without the filter, so inserts are not counted as filter probes.
+     */
+    @Override
+    public V put(K key, V value) {
+        Entry<K,V> e = super.getEntry(key);
+        if(e != null) {
+            return e.setValue(value);
+        }
+        link(newEntry(key, value));
+        if(!filter.add(key)) {
+            rebuildFilter(Math.max(size, filter.capacity()) * 2);
+        }
+        return null;
+    }
+
+    @Override
+    void remove(Entry<K,V> e) {
+        super.remove(e);
+        filter.remove(e.key);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        filter.clear();
+    }
+
+    private void rebuildFilter(int capacity) {
+        CuckooFilter rebuilt = new CuckooFilter(capacity);
+        rebuilt.copyStats(filter);
+        for (Entry<K,V> e = head.nextArr[0]; e != null; e = e.nextArr[0]) {
+            if(!rebuilt.add(e.key)) {
+                rebuildFilter(capacity * 2);
+                return;
+            }
+        }
+        filter = rebuilt;
+    }
+}
@@ -0,0 +1,80 @@
+package util;
+
+import java.util.*;
+/*SkipSet with a CuckooFilter front
+ * contains() answers definite misses from the filter without descending the towers.
+ * The filter is rebuilt from level 0 at twice the capacity whenever it fills up.
+ * Elements need hashCode() consistent with compareTo(), as for a HashSet holding the same elements.
+ */
+
+public class FilteredSkipSet<E> extends SkipSet<E> {
+    private static final int INITIAL_CAPACITY = 16;
+    private CuckooFilter filter = new CuckooFilter(INITIAL_CAPACITY);
+
+    public FilteredSkipSet() {
+    }
+
+    public FilteredSkipSet(Collection<? extends E> c) {
+        addAll(c);
+    }
+
+    /**
+     * @return the membership filter, whose accessors report its load, memory use and false positive rate
+     */
+    public CuckooFilter filter() {
+        return filter;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        boolean passed = filter.mightContain(o);
+        boolean present = passed && getNode(o) != null;
+        filter.record(passed, present);
+        return present;
+    }
+
+    @Override
+    public boolean add(E e) {
+        if(super.add(e)) {
+            if(!filter.add(e)) {
+                rebuildFilter(Math.max(size, filter.capacity()) * 2);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void remove(Node<E> n) {
+        super.remove(n);
+        filter.remove(n.value);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        filter.clear();
+    }
+
+    /**
+     * The clone gets its own filter, as removals from a shared one would hide the other set's elements.
+     */
+    @Override
+    public FilteredSkipSet<E> clone() {
+        FilteredSkipSet<E> clone = (FilteredSkipSet<E>) super.clone();
+        clone.rebuildFilter(filter.capacity());
+        return clone;
+    }
+
+    private void rebuildFilter(int capacity) {
+        CuckooFilter rebuilt = new CuckooFilter(capacity);
+        rebuilt.copyStats(filter);
+        for (Node<E> n = head.nextArr[0]; n != null; n = n.nextArr[0]) {
+            if(!rebuilt.add(n.value)) {
+                rebuildFilter(capacity * 2);
+                return;
+            }
+        }
+        filter = rebuilt;
+    }
+}
@@ -0,0 +1,125 @@
+package util;
+
+import java.util.*;
+/*Immutable set of longs in Eytzinger layout
+ * { long[] sorted; long[] eytz; int[] rank; }
+ * The primitive counterpart of FrozenSkipSet: keys are compared in place, so a search touches only the eytz
+ * array until its last step, and its first levels stay in cache across searches.
+ * Navigation returns indexes into the ascending order, -1 meaning none, to avoid boxing.
+ */
+
+public class FrozenLongSet implements java.io.Serializable {
+    private final long[] sorted;
+    private final long[] eytz;
+    private final int[] rank;
+
+    private FrozenLongSet(long[] sorted) {
+        int n = sorted.length;
+        this.sorted = sorted;
+        eytz = new long[n + 1];
+        rank = new int[n + 1];
+        int k = 1;
+        while (2 * k <= n) {
+            k *= 2;
+        }
+        for (int i = 0; i < n; i++) {
+            eytz[k] = sorted[i];
+            rank[k] = i;
+            if(2 * k + 1 <= n) {
+                k = 2 * k + 1;
+                while (2 * k <= n) {
+                    k *= 2;
+                }
+            } else {
+                while ((k & 1) == 1) {
+                    k >>= 1;
+                }
+                k >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Freezes a set of longs in O(n) from its bottom row.
+     */
+    public static FrozenLongSet of(SkipSet<Long> set) {
+        long[] sorted = new long[set.size()];
+        int i = 0;
+        for (SkipSet<Long>.Node<Long> n = set.head.nextArr[0]; n != null; n = n.nextArr[0]) {
+            sorted[i++] = n.value;
+        }
+        return new FrozenLongSet(sorted);
+    }
+
+    //region Search
+    /**
+     * @return the index of the first key not less than key, or greater than it if strict, or size() if none
+     */
+    private int bound(long key, boolean strict) {
+        int n = sorted.length;
+        int i = 1;
+        if(strict) {
+            while (i <= n) {
+                i = 2 * i + (eytz[i] <= key ? 1 : 0);
+            }
+        } else {
+            while (i <= n) {
+                i = 2 * i + (eytz[i] < key ? 1 : 0);
+            }
+        }
+        i >>>= Integer.numberOfTrailingZeros(~i) + 1;
+        return i == 0 ? n : rank[i];
+    }
+
+    public int size() {
+        return sorted.length;
+    }
+
+    public boolean isEmpty() {
+        return sorted.length == 0;
+    }
+
+    public boolean contains(long key) {
+        int i = bound(key, false);
+        return i < sorted.length && sorted[i] == key;
+    }
+
+    /**
+     * @return the index of key, or -1 if absent
+     */
+    public int indexOf(long key) {
+        int i = bound(key, false);
+        return i < sorted.length && sorted[i] == key ? i : -1;
+    }
+
+    public int ceilingIndex(long key) {
+        int i = bound(key, false);
+        return i < sorted.length ? i : -1;
+    }
+
+    public int higherIndex(long key) {
+        int i = bound(key, true);
+        return i < sorted.length ? i : -1;
+    }
+
+    public int floorIndex(long key) {
+        return bound(key, true) - 1;
+    }
+
+    public int lowerIndex(long key) {
+        return bound(key, false) - 1;
+    }
+
+    /**
+     * @return the key at index in ascending order
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+     */
+    public long get(int index) {
+        return sorted[Objects.checkIndex(index, sorted.length)];
+    }
+
+    public long[] toArray() {
+        return sorted.clone();
+    }
+    //endregion
+}
@@ -0,0 +1,204 @@
+package util;
+
+import java.util.*;
+/*Immutable NavigableMap in Eytzinger layout
+ * { FrozenSkipSet<K> keys; Object[] values; }
+ * values is aligned with the sorted keys, so every search runs over the keys' Eytzinger array and reads one value.
+ * Views share both arrays through a narrowed or descending key set. Built by SkipMap.freeze() in O(n) from
+ * the bottom row.
+ */
+
+public class FrozenSkipMap<K,V> extends AbstractMap<K,V> implements NavigableMap<K,V>, java.io.Serializable {
+    private final FrozenSkipSet<K> keys;
+    private final Object[] values;
+
+    FrozenSkipMap(FrozenSkipSet<K> keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<K,V> entry(int i) {
+        return i < 0 ? null : new SimpleImmutableEntry<>(keys.at(i), (V) values[i]);
+    }
+
+    //region Get
+    @Override
+    public int size() {
+        return keys.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return keys.indexOf(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = keys.indexOf(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    @Override
+    public Entry<K,V> lowerEntry(K key) {
+        return entry(keys.lowerIndex(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keys.lower(key);
+    }
+
+    @Override
+    public Entry<K,V> floorEntry(K key) {
+        return entry(keys.floorIndex(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keys.floor(key);
+    }
+
+    @Override
+    public Entry<K,V> ceilingEntry(K key) {
+        return entry(keys.ceilingIndex(key));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keys.ceiling(key);
+    }
+
+    @Override
+    public Entry<K,V> higherEntry(K key) {
+        return entry(keys.higherIndex(key));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keys.higher(key);
+    }
+
+    @Override
+    public Entry<K,V> firstEntry() {
+        return entry(keys.firstIndex());
+    }
+
+    @Override
+    public Entry<K,V> lastEntry() {
+        return entry(keys.lastIndex());
+    }
+
+    @Override
+    public K firstKey() {
+        return keys.first();
+    }
+
+    @Override
+    public K lastKey() {
+        return keys.last();
+    }
+
+    @Override
+    public Entry<K,V> pollFirstEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Entry<K,V> pollLastEntry() {
+        throw new UnsupportedOperationException();
+    }
+    //endregion
+
+    //region Views
+    @Override
+    public Set<Entry<K,V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K,V>> iterator() {
+                return new Iterator<>() {
+                    int i = keys.firstIndex();
+                    @Override
+                    public boolean hasNext() {
+                        return i >= 0;
+                    }
+
+                    @Override
+                    public Entry<K,V> next() {
+                        if(i < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<K,V> e = entry(i);
+                        i = keys.nextIndex(i);
+                        return e;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    @Override
+    public NavigableSet<K> keySet() {
+        return keys;
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return keys;
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return keys.descendingSet();
+    }
+
+    /**
+     * @return a view in descending order over the same arrays, in O(1)
+     */
+    @Override
+    public NavigableMap<K,V> descendingMap() {
+        return new FrozenSkipMap<>((FrozenSkipSet<K>) keys.descendingSet(), values);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return keys.comparator();
+    }
+
+    @Override
+    public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return new FrozenSkipMap<>((FrozenSkipSet<K>) keys.subSet(fromKey, fromInclusive, toKey, toInclusive), values);
+    }
+
+    @Override
+    public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+        return new FrozenSkipMap<>((FrozenSkipSet<K>) keys.headSet(toKey, inclusive), values);
+    }
+
+    @Override
+    public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        return new FrozenSkipMap<>((FrozenSkipSet<K>) keys.tailSet(fromKey, inclusive), values);
+    }
+
+    @Override
+    public SortedMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+    //endregion
+}
@@ -0,0 +1,320 @@
+package util;
+
+import java.util.*;
+/*Immutable NavigableSet in Eytzinger layout
+ * { Object[] sorted; Object[] eytz; int[] rank; int from; int to; boolean descending; }
+ * eytz holds the elements in breadth-first order of the implicit binary search tree over sorted, 1-based, so the
+ * first levels of every search share a few cache lines. A search descends k = 2k + (eytz[k] < key) without
+ * early exit, then rank maps the final node back to its index in sorted. Views share the arrays and narrow
+ * [from, to), and descending views swap the searches for their mirror images. Built by SkipSet.freeze() in
+ * O(n) from the bottom row.
+ */
+
+public class FrozenSkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, java.io.Serializable {
+    private final Object[] sorted;
+    private final Object[] eytz;
+    private final int[] rank;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+
+    /**
+     * @param sorted distinct elements in ascending order, which the set takes ownership of
+     */
+    FrozenSkipSet(Object[] sorted) {
+        int n = sorted.length;
+        this.sorted = sorted;
+        eytz = new Object[n + 1];
+        rank = new int[n + 1];
+        from = 0;
+        to = n;
+        descending = false;
+        //Visit the tree in order, which is the order of sorted.
+        int k = 1;
+        while (2 * k <= n) {
+            k *= 2;
+        }
+        for (int i = 0; i < n; i++) {
+            eytz[k] = sorted[i];
+            rank[k] = i;
+            if(2 * k + 1 <= n) {
+                k = 2 * k + 1;
+                while (2 * k <= n) {
+                    k *= 2;
+                }
+            } else {
+                while ((k & 1) == 1) {
+                    k >>= 1;
+                }
+                k >>= 1;
+            }
+        }
+    }
+
+    private FrozenSkipSet(FrozenSkipSet<E> base, int from, int to, boolean descending) {
+        sorted = base.sorted;
+        eytz = base.eytz;
+        rank = base.rank;
+        this.from = from;
+        this.to = Math.max(from, to);
+        this.descending = descending;
+    }
+
+    //region Search
+    /**
+     * @return the index in sorted of the first element not less than key, or greater than it if strict
+     */
+    @SuppressWarnings("unchecked")
+    private int bound(Object key, boolean strict) {
+        Comparable<Object> k = (Comparable<Object>) key;
+        int n = sorted.length;
+        int i = 1;
+        if(strict) {
+            while (i <= n) {
+                i = 2 * i + (k.compareTo(eytz[i]) >= 0 ? 1 : 0);
+            }
+        } else {
+            while (i <= n) {
+                i = 2 * i + (k.compareTo(eytz[i]) > 0 ? 1 : 0);
+            }
+        }
+        //Undo the right turns taken after the last left turn, whose node is the answer.
+        i >>>= Integer.numberOfTrailingZeros(~i) + 1;
+        return i == 0 ? n : rank[i];
+    }
+
+    /**
+     * @return the index in sorted of the first element in [from, to) not less than key, or greater than it
+     *         if strict, or -1
+     */
+    private int up(Object key, boolean strict) {
+        int i = Math.max(bound(key, strict), from);
+        return i < to ? i : -1;
+    }
+
+    /**
+     * @return the index in sorted of the last element in [from, to) not greater than key, or less than it
+     *         if strict, or -1
+     */
+    private int down(Object key, boolean strict) {
+        int i = Math.min(bound(key, !strict), to) - 1;
+        return i >= from ? i : -1;
+    }
+
+    //The searches below are in the order of this set, so a descending set looks the other way.
+    int ceilingIndex(Object key) {
+        return descending ? down(key, false) : up(key, false);
+    }
+
+    int higherIndex(Object key) {
+        return descending ? down(key, true) : up(key, true);
+    }
+
+    int floorIndex(Object key) {
+        return descending ? up(key, false) : down(key, false);
+    }
+
+    int lowerIndex(Object key) {
+        return descending ? up(key, true) : down(key, true);
+    }
+
+    int indexOf(Object key) {
+        int i = up(key, false);
+        return i >= 0 && compare(sorted[i], key) == 0 ? i : -1;
+    }
+
+    int firstIndex() {
+        return from == to ? -1 : descending ? to - 1 : from;
+    }
+
+    int lastIndex() {
+        return from == to ? -1 : descending ? from : to - 1;
+    }
+
+    /**
+     * @return the index in sorted of the element after the one at i in the order of this set, or -1
+     */
+    int nextIndex(int i) {
+        i += descending ? -1 : 1;
+        return i >= from && i < to ? i : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    E at(int i) {
+        return i < 0 ? null : (E) sorted[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+    //endregion
+
+    //region Get
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public E lower(E e) {
+        return at(lowerIndex(e));
+    }
+
+    @Override
+    public E floor(E e) {
+        return at(floorIndex(e));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return at(ceilingIndex(e));
+    }
+
+    @Override
+    public E higher(E e) {
+        return at(higherIndex(e));
+    }
+
+    @Override
+    public E first() {
+        if(from == to) {
+            throw new NoSuchElementException();
+        }
+        return at(firstIndex());
+    }
+
+    @Override
+    public E last() {
+        if(from == to) {
+            throw new NoSuchElementException();
+        }
+        return at(lastIndex());
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] a = Arrays.copyOfRange(sorted, from, to);
+        if(descending) {
+            Collections.reverse(Arrays.asList(a));
+        }
+        return a;
+    }
+    //endregion
+
+    //region Iterate
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            int i = firstIndex();
+            @Override
+            public boolean hasNext() {
+                return i >= 0;
+            }
+
+            @Override
+            public E next() {
+                if(i < 0) {
+                    throw new NoSuchElementException();
+                }
+                E e = at(i);
+                i = nextIndex(i);
+                return e;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    /**
+     * A descending set is not SORTED, as that would claim the natural order of its elements.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        if(descending) {
+            return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL
+                    | Spliterator.IMMUTABLE);
+        }
+        return Spliterators.spliterator(sorted, from, to,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+    //endregion
+
+    //region Views
+    @Override
+    public Comparator<? super E> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    /**
+     * @return a view in descending order over the same arrays, in O(1)
+     */
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new FrozenSkipSet<>(this, from, to, !descending);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if(descending ? compare(fromElement, toElement) < 0 : compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return descending ? range(toElement, toInclusive, fromElement, fromInclusive)
+                : range(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        Objects.requireNonNull(toElement);
+        return descending ? range(toElement, inclusive, null, false) : range(null, false, toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        Objects.requireNonNull(fromElement);
+        return descending ? range(null, false, fromElement, inclusive) : range(fromElement, inclusive, null, false);
+    }
+
+    /**
+     * Narrows [from, to) to the elements between lo and hi in ascending order, where a null bound is unbounded.
+     */
+    private FrozenSkipSet<E> range(Object lo, boolean loInclusive, Object hi, boolean hiInclusive) {
+        int i = lo == null ? from : Math.max(bound(lo, !loInclusive), from);
+        int j = hi == null ? to : Math.min(bound(hi, hiInclusive), to);
+        return new FrozenSkipSet<>(this, i, j, descending);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+    //endregion
+}
@@ -0,0 +1,53 @@
+package util;
+
+import java.util.*;
+/*SkipMap with a hash index
+ * HashMap<Object, Entry<K,V>> from key to tower entry.
+ * get(), containsKey() and remove() resolve the entry through the index and unlink it through its prevArr,
+ * without a search. put() of a new key and the ordered operations still descend the towers.
+ * Keys need hashCode() consistent with compareTo(), as for a HashMap holding the same keys.
+ */
+
+public class HashedSkipMap<K,V> extends SkipMap<K,V> {
+    private transient HashMap<Object, Entry<K,V>> index = new HashMap<>();
+
+    public HashedSkipMap() {
+    }
+
+    public HashedSkipMap(Map<? extends K, ? extends V> m) {
+        putAll(m);
+    }
+
+    @Override
+    Entry<K,V> getEntry(Object key) {
+        return index.get(key);
+    }
+
+    @Override
+    Entry<K,V> newEntry(K key, V value) {
+        Entry<K,V> e = super.newEntry(key, value);
+        index.put(key, e);
+        return e;
+    }
+
+    @Override
+    void remove(Entry<K,V> e) {
+        super.remove(e);
+        index.remove(e.key);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        index.clear();
+    }
+
+    @java.io.Serial
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        index = new HashMap<>();
+        for (Entry<K,V> e = head.nextArr[0]; e != null; e = e.nextArr[0]) {
+            index.put(e.key, e);
+        }
+    }
+}
@@ -0,0 +1,684 @@
+package util;
+
+import java.io.*;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+/*Log-Structured Merge store over SkipMap memtables
+ * Directory { MANIFEST: live run ids, newest first; run-<id>.sst: Block*, Index, long indexOffset }
+ * Block { int count; int rawLength; int length; deflated (boolean tombstone, key, value)* }
+ * Index { int blocks; long entries; (first key, long offset)* }
+ * Writes go to the active SkipMap. Once it holds memtableLimit keys it is frozen and a background thread
+ * streams it in key order to a new run, while a fresh map takes writes. Once there are compactionTrigger runs,
+ * the same thread merges them into one, dropping deletions. Reads look in the active map, the frozen maps and
+ * the runs, newest first, and scans merge them all. Null values are not supported.
+ */
+
+public class LsmSkipStore<K,V> implements Closeable {
+    private static final Object TOMBSTONE = new Object();
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final String MANIFEST = "MANIFEST";
+    private static final int CACHED_BLOCKS = 16;
+
+    private final Path dir;
+    private final int memtableLimit;
+    private final int blockBytes;
+    private final int compactionTrigger;
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "LsmSkipStore-background");
+        t.setDaemon(true);
+        return t;
+    });
+
+    //Guarded by this. Frozen maps and runs are immutable, so readers only lock to take a snapshot of the lists.
+    private SkipMap<K,Object> active = new SkipMap<>();
+    private List<SkipMap<K,Object>> frozen = List.of();
+    private List<SortedRun> runs = List.of();
+    private long nextRunId;
+    private IOException failure;
+
+    public LsmSkipStore(Path dir) throws IOException {
+        this(dir, 1 << 16, 16 << 10, 4);
+    }
+
+    /**
+     * Opens the store in dir, loading the runs listed in its manifest.
+     * @param memtableLimit the number of keys at which the active map is frozen
+     * @param blockBytes the uncompressed size at which a run block is closed
+     * @param compactionTrigger the number of runs at which they are merged into one
+     */
+    public LsmSkipStore(Path dir, int memtableLimit, int blockBytes, int compactionTrigger) throws IOException {
+        if(memtableLimit < 1 || blockBytes < 1 || compactionTrigger < 2) {
+            throw new IllegalArgumentException("Memtable limit: " + memtableLimit + ", Block bytes: " + blockBytes
+                    + ", Compaction trigger: " + compactionTrigger);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.memtableLimit = memtableLimit;
+        this.blockBytes = blockBytes;
+        this.compactionTrigger = compactionTrigger;
+        Path manifest = dir.resolve(MANIFEST);
+        List<SortedRun> loaded = new ArrayList<>();
+        Set<Path> live = new HashSet<>();
+        if(Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest)) {
+                long id = Long.parseLong(line.trim());
+                loaded.add(SortedRun.open(runPath(id), id));
+                live.add(runPath(id));
+                nextRunId = Math.max(nextRunId, id + 1);
+            }
+        }
+        //Runs written or compacted away before a crash, and unfinished files.
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{sst,tmp}")) {
+            for (Path file : files) {
+                if(!live.contains(file)) {
+                    Files.delete(file);
+                }
+            }
+        }
+        runs = List.copyOf(loaded);
+    }
+
+    //region Write
+    public synchronized void put(K key, V value) {
+        check();
+        active.put(key, Objects.requireNonNull(value));
+        if(active.size() >= memtableLimit) {
+            freeze();
+        }
+    }
+
+    /**
+     * Records the deletion of key, which shadows older values until compaction drops both.
+     */
+    public synchronized void remove(K key) {
+        check();
+        active.put(key, TOMBSTONE);
+        if(active.size() >= memtableLimit) {
+            freeze();
+        }
+    }
+
+    private void freeze() {
+        List<SkipMap<K,Object>> next = new ArrayList<>(frozen.size() + 1);
+        next.add(active);
+        next.addAll(frozen);
+        frozen = List.copyOf(next);
+        active = new SkipMap<>();
+        background.execute(this::flushOldest);
+    }
+
+    /**
+     * Freezes the active map and waits until every frozen map is in a run.
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            if(!active.isEmpty()) {
+                freeze();
+            }
+        }
+        await(() -> { });
+    }
+
+    /**
+     * Merges every run into one, waiting for pending flushes first.
+     */
+    public void compact() throws IOException {
+        await(this::compactRuns);
+    }
+
+    private void await(Runnable task) throws IOException {
+        try {
+            background.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        synchronized (this) {
+            if(failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void check() {
+        if(failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+    //endregion
+
+    //region Background
+    private void flushOldest() {
+        SkipMap<K,Object> oldest;
+        long id;
+        synchronized (this) {
+            if(failure != null) {
+                return;
+            }
+            oldest = frozen.get(frozen.size() - 1);
+            id = nextRunId++;
+        }
+        try {
+            SortedRun run = SortedRun.write(dir, runPath(id), id, oldest.entrySet().iterator(), blockBytes);
+            synchronized (this) {
+                List<SortedRun> next = new ArrayList<>(runs.size() + 1);
+                next.add(run);
+                next.addAll(runs);
+                writeManifest(next);
+                runs = List.copyOf(next);
+                frozen = List.copyOf(frozen.subList(0, frozen.size() - 1));
+            }
+            if(runs.size() >= compactionTrigger) {
+                compactRuns();
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Merges every run into one. As nothing is older than the runs, deletions are dropped rather than copied.
+     */
+    private void compactRuns() {
+        List<SortedRun> victims;
+        long id;
+        synchronized (this) {
+            if(failure != null || runs.size() < 2) {
+                return;
+            }
+            victims = runs;
+            id = nextRunId++;
+        }
+        try {
+            List<Iterator<Map.Entry<K,Object>>> sources = new ArrayList<>();
+            for (SortedRun run : victims) {
+                sources.add(run.iterator(null));
+            }
+            SortedRun merged = SortedRun.write(dir, runPath(id), id, new Merge<>(sources, null), blockBytes);
+            synchronized (this) {
+                List<SortedRun> next = new ArrayList<>(runs);
+                next.removeAll(victims);
+                next.add(merged);
+                writeManifest(next);
+                runs = List.copyOf(next);
+            }
+            for (SortedRun run : victims) {
+                run.retire();
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+        }
+    }
+
+    private void writeManifest(List<SortedRun> live) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (SortedRun run : live) {
+            sb.append(run.id).append('\n');
+        }
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path runPath(long id) {
+        return dir.resolve("run-" + id + ".sst");
+    }
+    //endregion
+
+    //region Read
+    @SuppressWarnings("unchecked")
+    public V get(K key) throws IOException {
+        List<SkipMap<K,Object>> frozenMaps;
+        List<SortedRun> liveRuns;
+        synchronized (this) {
+            check();
+            Object value = active.get(key);
+            if(value != null) {
+                return value == TOMBSTONE ? null : (V) value;
+            }
+            frozenMaps = frozen;
+            liveRuns = runs;
+        }
+        for (SkipMap<K,Object> map : frozenMaps) {
+            Object value = map.get(key);
+            if(value != null) {
+                return value == TOMBSTONE ? null : (V) value;
+            }
+        }
+        for (SortedRun run : liveRuns) {
+            Object value = run.get(key);
+            if(value != null) {
+                return value == TOMBSTONE ? null : (V) value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entries with keys in [from, to) in key order, as of the call. A null bound is unbounded.
+     * The active map's part of the range is copied, while frozen maps and runs are read lazily.
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<Map.Entry<K,V>> scan(K from, K to) {
+        List<Iterator<Map.Entry<K,Object>>> sources = new ArrayList<>();
+        List<SkipMap<K,Object>> frozenMaps;
+        List<SortedRun> liveRuns;
+        synchronized (this) {
+            check();
+            List<Map.Entry<K,Object>> copy = new ArrayList<>();
+            for (SkipMap.Entry<K,Object> e = from == null ? active.firstEntry() : active.ceilingEntry(from);
+                 e != null && below(e.key, to); e = e.nextArr[0]) {
+                copy.add(new AbstractMap.SimpleImmutableEntry<>(e.key, e.value));
+            }
+            sources.add(copy.iterator());
+            frozenMaps = frozen;
+            liveRuns = runs;
+        }
+        for (SkipMap<K,Object> map : frozenMaps) {
+            SkipMap.Entry<K,Object> start = from == null ? map.firstEntry() : map.ceilingEntry(from);
+            sources.add(new Iterator<>() {
+                SkipMap.Entry<K,Object> curEntry = start;
+                @Override
+                public boolean hasNext() {
+                    return curEntry != null;
+                }
+
+                @Override
+                public Map.Entry<K,Object> next() {
+                    SkipMap.Entry<K,Object> e = curEntry;
+                    curEntry = curEntry.nextArr[0];
+                    return e;
+                }
+            });
+        }
+        for (SortedRun run : liveRuns) {
+            sources.add(run.iterator(from));
+        }
+        return (Iterator<Map.Entry<K,V>>) (Iterator<?>) new Merge<>(sources, to);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean below(Object key, Object to) {
+        return to == null || ((Comparable<Object>) key).compareTo(to) < 0;
+    }
+
+    /**
+     * Merges sources ordered newest first, yielding the newest value of each key below to that is not a deletion.
+     */
+    private static final class Merge<K> implements Iterator<Map.Entry<K,Object>> {
+        private record Head<K>(Map.Entry<K,Object> entry, int rank, Iterator<Map.Entry<K,Object>> source) {
+        }
+
+        private final PriorityQueue<Head<K>> heap;
+        private final K to;
+        private Map.Entry<K,Object> next;
+
+        @SuppressWarnings("unchecked")
+        Merge(List<Iterator<Map.Entry<K,Object>>> sources, K to) {
+            this.to = to;
+            heap = new PriorityQueue<>(Math.max(sources.size(), 1), (a, b) -> {
+                int cmp = ((Comparable<Object>) a.entry.getKey()).compareTo(b.entry.getKey());
+                return cmp != 0 ? cmp : Integer.compare(a.rank, b.rank);
+            });
+            for (int i = 0; i < sources.size(); i++) {
+                push(sources.get(i), i);
+            }
+            advance();
+        }
+
+        private void push(Iterator<Map.Entry<K,Object>> source, int rank) {
+            if(source.hasNext()) {
+                heap.add(new Head<>(source.next(), rank, source));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (next == null && !heap.isEmpty() && below(heap.peek().entry.getKey(), to)) {
+                Head<K> newest = heap.poll();
+                while (!heap.isEmpty() && ((Comparable<Object>) heap.peek().entry.getKey()).compareTo(newest.entry.getKey()) == 0) {
+                    Head<K> stale = heap.poll();
+                    push(stale.source, stale.rank);
+                }
+                push(newest.source, newest.rank);
+                if(newest.entry.getValue() != TOMBSTONE) {
+                    next = newest.entry;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K,Object> next() {
+            if(next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K,Object> e = next;
+            advance();
+            return e;
+        }
+    }
+    //endregion
+
+    //region Run
+    /**
+     * An immutable run file, with its sparse index of block first keys in memory and a few blocks cached.
+     * A retired run's channel stays open for readers that still hold it, and is closed once they are collected.
+     */
+    private static final class SortedRun {
+        private record Block(Object[] keys, Object[] values) {
+        }
+
+        private record Resource(FileChannel channel, Path path, boolean[] retired) implements Runnable {
+            @Override
+            public void run() {
+                try {
+                    channel.close();
+                    if(retired[0]) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final Object[] firstKeys;
+        private final long[] offsets;
+        private final boolean[] retired = {false};
+        private final Map<Integer, Block> cache = new LinkedHashMap<>(CACHED_BLOCKS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Block> eldest) {
+                return size() > CACHED_BLOCKS;
+            }
+        };
+
+        private SortedRun(long id, Path path, FileChannel channel, Object[] firstKeys, long[] offsets) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.firstKeys = firstKeys;
+            this.offsets = offsets;
+            CLEANER.register(this, new Resource(channel, path, retired));
+        }
+
+        /**
+         * Streams entries, which must be in key order, to a new run file.
+         */
+        static <K> SortedRun write(Path dir, Path path, long id, Iterator<? extends Map.Entry<K,Object>> entries,
+                                   int blockBytes) throws IOException {
+            Path tmp = dir.resolve(path.getFileName() + ".tmp");
+            List<Object> firstKeys = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+            long count = 0;
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                while (entries.hasNext()) {
+                    ByteArrayOutputStream raw = new ByteArrayOutputStream(blockBytes + (blockBytes >> 2));
+                    int blockCount = 0;
+                    try (ObjectOutputStream s = new ObjectOutputStream(raw)) {
+                        //The stream header alone may reach a tiny blockBytes, so every block takes at least one entry.
+                        while (entries.hasNext() && (blockCount == 0 || raw.size() < blockBytes)) {
+                            Map.Entry<K,Object> e = entries.next();
+                            if(blockCount == 0) {
+                                firstKeys.add(e.getKey());
+                                offsets.add(position);
+                            }
+                            boolean tombstone = e.getValue() == TOMBSTONE;
+                            s.writeBoolean(tombstone);
+                            s.writeObject(e.getKey());
+                            s.writeObject(tombstone ? null : e.getValue());
+                            s.flush();
+                            blockCount++;
+                        }
+                    }
+                    count += blockCount;
+                    byte[] bytes = raw.toByteArray();
+                    deflater.reset();
+                    deflater.setInput(bytes);
+                    deflater.finish();
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 64);
+                    byte[] chunk = new byte[8192];
+                    while (!deflater.finished()) {
+                        compressed.write(chunk, 0, deflater.deflate(chunk));
+                    }
+                    ByteBuffer block = ByteBuffer.allocate(3 * Integer.BYTES + compressed.size());
+                    block.putInt(blockCount).putInt(bytes.length).putInt(compressed.size()).put(compressed.toByteArray()).flip();
+                    position += writeFully(out, block);
+                }
+                ByteArrayOutputStream index = new ByteArrayOutputStream();
+                try (ObjectOutputStream s = new ObjectOutputStream(index)) {
+                    s.writeInt(firstKeys.size());
+                    s.writeLong(count);
+                    for (int i = 0; i < firstKeys.size(); i++) {
+                        s.writeObject(firstKeys.get(i));
+                        s.writeLong(offsets.get(i));
+                    }
+                }
+                writeFully(out, ByteBuffer.wrap(index.toByteArray()));
+                writeFully(out, ByteBuffer.allocate(Long.BYTES).putLong(0, position));
+                out.force(true);
+            } finally {
+                deflater.end();
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+            return open(path, id);
+        }
+
+        static SortedRun open(Path path, long id) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                ByteBuffer footer = ByteBuffer.allocate(Long.BYTES);
+                readFully(channel, footer, size - Long.BYTES);
+                long indexOffset = footer.getLong(0);
+                ByteBuffer index = ByteBuffer.allocate((int) (size - Long.BYTES - indexOffset));
+                readFully(channel, index, indexOffset);
+                try (ObjectInputStream s = new ObjectInputStream(new ByteArrayInputStream(index.array()))) {
+                    int blocks = s.readInt();
+                    s.readLong();
+                    Object[] firstKeys = new Object[blocks];
+                    long[] offsets = new long[blocks + 1];
+                    for (int i = 0; i < blocks; i++) {
+                        firstKeys[i] = s.readObject();
+                        offsets[i] = s.readLong();
+                    }
+                    offsets[blocks] = indexOffset;
+                    return new SortedRun(id, path, channel, firstKeys, offsets);
+                }
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                channel.close();
+                throw e instanceof IOException io ? io : new IOException("Corrupt run " + path, e);
+            }
+        }
+
+        /**
+         * Deletes the file now where the platform lets open files be deleted, and otherwise once collected.
+         */
+        void retire() {
+            retired[0] = true;
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * @return the value, TOMBSTONE for a deletion, or null if the run does not hold key
+         */
+        Object get(Object key) throws IOException {
+            int b = floorBlock(key);
+            if(b < 0) {
+                return null;
+            }
+            Block block = block(b);
+            int i = Arrays.binarySearch(block.keys, key);
+            return i < 0 ? null : block.values[i];
+        }
+
+        /**
+         * Iterates the entries from the first key not less than from, reading blocks as it reaches them.
+         */
+        <K> Iterator<Map.Entry<K,Object>> iterator(Object from) {
+            int start = from == null ? 0 : Math.max(floorBlock(from), 0);
+            return new Iterator<>() {
+                int b = start;
+                int i = -1;
+                Block block;
+
+                @Override
+                public boolean hasNext() {
+                    while (block == null || i >= block.keys.length) {
+                        if(b >= firstKeys.length) {
+                            return false;
+                        }
+                        try {
+                            block = block(b++);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        i = 0;
+                        if(from != null && b == start + 1) {
+                            int found = Arrays.binarySearch(block.keys, from);
+                            i = found < 0 ? -found - 1 : found;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Map.Entry<K,Object> next() {
+                    if(!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<K,Object> e = new AbstractMap.SimpleImmutableEntry<>((K) block.keys[i], block.values[i]);
+                    i++;
+                    return e;
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private int floorBlock(Object key) {
+            int lo = 0, hi = firstKeys.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if(((Comparable<Object>) firstKeys[mid]).compareTo(key) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        private Block block(int b) throws IOException {
+            synchronized (cache) {
+                Block cached = cache.get(b);
+                if(cached != null) {
+                    return cached;
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[b + 1] - offsets[b]));
+            readFully(channel, buffer, offsets[b]);
+            int count = buffer.getInt(0);
+            byte[] raw = new byte[buffer.getInt(Integer.BYTES)];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(buffer.array(), 3 * Integer.BYTES, buffer.getInt(2 * Integer.BYTES));
+                inflater.inflate(raw);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block " + b + " of run " + id, e);
+            } finally {
+                inflater.end();
+            }
+            Object[] keys = new Object[count];
+            Object[] values = new Object[count];
+            try (ObjectInputStream s = new ObjectInputStream(new ByteArrayInputStream(raw))) {
+                for (int i = 0; i < count; i++) {
+                    boolean tombstone = s.readBoolean();
+                    keys[i] = s.readObject();
+                    values[i] = s.readObject();
+                    if(tombstone) {
+                        values[i] = TOMBSTONE;
+                    }
+                }
+            } catch (ClassNotFoundException e) {
+                throw new InvalidObjectException(e.getMessage());
+            }
+            Block block = new Block(keys, values);
+            synchronized (cache) {
+                cache.put(b, block);
+            }
+            return block;
+        }
+
+        private static long writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+            long written = 0;
+            while (buffer.hasRemaining()) {
+                written += out.write(buffer);
+            }
+            return written;
+        }
+
+        private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = in.read(buffer, position + buffer.position());
+                if(read < 0) {
+                    throw new EOFException();
+                }
+            }
+        }
+    }
+    //endregion
+
+    /**
+     * Flushes the active map to a run and stops the background thread. Retired runs are deleted once collected.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            background.shutdown();
+            for (SortedRun run : runs) {
+                run.close();
+            }
+        }
+    }
+}
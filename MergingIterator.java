@@ -0,0 +1,379 @@
+package util;
+
+import java.util.*;
+import java.util.function.Consumer;
+/*K-way merging iterator over SkipSets and SkipMaps
+ * Loser tree { int[] tree; tree[0] the winning input, tree[1..k-1] the loser of each match }
+ * Each input is a position in a SkipSet or SkipMap, so nothing is buffered. Advancing the winner replays
+ * only its path to the root, O(log k) comparisons per element. Ties go to the earlier input, so with
+ * distinct set the first input holding a key wins, which for maps listed newest first is newest-wins.
+ * seek() descends each input to a lower bound in O(k log n). The Spliterator splits the key range at
+ * a tower of the largest input.
+ */
+
+public final class MergingIterator<T> implements Iterator<T> {
+    private abstract static class Input<T> {
+        /** The current key, or null once exhausted. */
+        abstract Object key();
+        abstract T item();
+        abstract void next();
+        abstract void seek(Object lowerBound);
+        abstract Input<T> copy();
+        abstract int size();
+        /** A key of this input in (lo, hi) read from its highest row holding one, or null. */
+        abstract Object splitKey(Object lo, Object hi);
+    }
+
+    private static final class SetInput<E> extends Input<E> {
+        final SkipSet<E> set;
+        SkipSet<E>.Node<E> node;
+
+        SetInput(SkipSet<E> set, SkipSet<E>.Node<E> node) {
+            this.set = set;
+            this.node = node;
+        }
+
+        @Override
+        Object key() {
+            return node == null ? null : node.value;
+        }
+
+        @Override
+        E item() {
+            return node.value;
+        }
+
+        @Override
+        void next() {
+            node = node.nextArr[0];
+        }
+
+        @Override
+        void seek(Object lowerBound) {
+            node = set.new Finger().seek(lowerBound);
+        }
+
+        @Override
+        Input<E> copy() {
+            return new SetInput<>(set, node);
+        }
+
+        @Override
+        int size() {
+            return set.size();
+        }
+
+        @Override
+        Object splitKey(Object lo, Object hi) {
+            SkipSet<E>.Node<E> curNode = set.head;
+            for (int i = set.head.size() - 1; i >= 0; i--) {
+                while (curNode.nextArr[i] != null && compare(curNode.nextArr[i].value, lo) <= 0) {
+                    curNode = curNode.nextArr[i];
+                }
+                int count = 0;
+                for (SkipSet<E>.Node<E> n = curNode.nextArr[i]; n != null && below(n.value, hi); n = n.nextArr[i]) {
+                    count++;
+                }
+                if(count > 0) {
+                    SkipSet<E>.Node<E> mid = curNode.nextArr[i];
+                    for (int j = count / 2; j > 0; j--) {
+                        mid = mid.nextArr[i];
+                    }
+                    return mid.value;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class MapInput<K,V> extends Input<Map.Entry<K,V>> {
+        final SkipMap<K,V> map;
+        SkipMap.Entry<K,V> entry;
+
+        MapInput(SkipMap<K,V> map, SkipMap.Entry<K,V> entry) {
+            this.map = map;
+            this.entry = entry;
+        }
+
+        @Override
+        Object key() {
+            return entry == null ? null : entry.key;
+        }
+
+        @Override
+        Map.Entry<K,V> item() {
+            return entry;
+        }
+
+        @Override
+        void next() {
+            entry = entry.nextArr[0];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void seek(Object lowerBound) {
+            entry = map.ceilingEntry((K) lowerBound);
+        }
+
+        @Override
+        Input<Map.Entry<K,V>> copy() {
+            return new MapInput<>(map, entry);
+        }
+
+        @Override
+        int size() {
+            return map.size();
+        }
+
+        @Override
+        Object splitKey(Object lo, Object hi) {
+            SkipMap.Entry<K,V> curEntry = map.head;
+            for (int i = map.head.size() - 1; i >= 0; i--) {
+                while (curEntry.nextArr[i] != null && compare(curEntry.nextArr[i].key, lo) <= 0) {
+                    curEntry = curEntry.nextArr[i];
+                }
+                int count = 0;
+                for (SkipMap.Entry<K,V> e = curEntry.nextArr[i]; e != null && below(e.key, hi); e = e.nextArr[i]) {
+                    count++;
+                }
+                if(count > 0) {
+                    SkipMap.Entry<K,V> mid = curEntry.nextArr[i];
+                    for (int j = count / 2; j > 0; j--) {
+                        mid = mid.nextArr[i];
+                    }
+                    return mid.key;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final List<Input<T>> inputs;
+    private final boolean distinct;
+    private final int[] tree;
+    //Exclusive upper bound of the keys left to this iterator, null if unbounded.
+    private final Object hi;
+
+    private MergingIterator(List<Input<T>> inputs, boolean distinct, Object hi) {
+        this.inputs = inputs;
+        this.distinct = distinct;
+        this.hi = hi;
+        tree = new int[Math.max(inputs.size(), 1)];
+        build();
+    }
+
+    //region Factories
+    /**
+     * Merges the sets in ascending order.
+     * @param distinct whether an element held by several sets is returned once
+     */
+    public static <E> MergingIterator<E> ofSets(List<? extends SkipSet<E>> sets, boolean distinct) {
+        List<Input<E>> inputs = new ArrayList<>(sets.size());
+        for (SkipSet<E> set : sets) {
+            inputs.add(new SetInput<>(set, set.head.nextArr[0]));
+        }
+        return new MergingIterator<>(inputs, distinct, null);
+    }
+
+    /**
+     * Merges the entries of the maps in ascending key order. Entries with equal keys come in the order of the maps.
+     * @param newestWins whether only the entry of the first map holding a key is returned, so maps listed
+     *                   newest first shadow older ones
+     */
+    public static <K,V> MergingIterator<Map.Entry<K,V>> ofMaps(List<? extends SkipMap<K,V>> maps, boolean newestWins) {
+        List<Input<Map.Entry<K,V>>> inputs = new ArrayList<>(maps.size());
+        for (SkipMap<K,V> map : maps) {
+            inputs.add(new MapInput<>(map, map.head.nextArr[0]));
+        }
+        return new MergingIterator<>(inputs, newestWins, null);
+    }
+    //endregion
+
+    //region Loser Tree
+    /**
+     * Plays every match bottom up, the inputs being the leaves k..2k-1 of an implicit tree.
+     */
+    private void build() {
+        int k = inputs.size();
+        if(k <= 1) {
+            return;
+        }
+        int[] winners = new int[2 * k];
+        for (int i = 0; i < k; i++) {
+            winners[k + i] = i;
+        }
+        for (int n = k - 1; n >= 1; n--) {
+            int a = winners[2 * n], b = winners[2 * n + 1];
+            if(beats(a, b)) {
+                winners[n] = a;
+                tree[n] = b;
+            } else {
+                winners[n] = b;
+                tree[n] = a;
+            }
+        }
+        tree[0] = winners[1];
+    }
+
+    /**
+     * Replays the matches from input w's leaf to the root after w has advanced.
+     */
+    private void replay(int w) {
+        for (int n = (w + inputs.size()) >> 1; n >= 1; n >>= 1) {
+            if(beats(tree[n], w)) {
+                int loser = w;
+                w = tree[n];
+                tree[n] = loser;
+            }
+        }
+        tree[0] = w;
+    }
+
+    private boolean beats(int a, int b) {
+        Object ka = inputs.get(a).key(), kb = inputs.get(b).key();
+        if(ka == null || kb == null) {
+            return kb == null && (ka != null || a < b);
+        }
+        int cmp = compare(ka, kb);
+        return cmp < 0 || (cmp == 0 && a < b);
+    }
+    //endregion
+
+    //region Iterate
+    @Override
+    public boolean hasNext() {
+        if(inputs.isEmpty()) {
+            return false;
+        }
+        Object key = inputs.get(tree[0]).key();
+        return key != null && below(key, hi);
+    }
+
+    @Override
+    public T next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Input<T> winner = inputs.get(tree[0]);
+        Object key = winner.key();
+        T item = winner.item();
+        advance();
+        while (distinct && inputs.get(tree[0]).key() != null && compare(inputs.get(tree[0]).key(), key) == 0) {
+            advance();
+        }
+        return item;
+    }
+
+    private void advance() {
+        int w = tree[0];
+        inputs.get(w).next();
+        replay(w);
+    }
+
+    /**
+     * Positions every input at its first key not less than lowerBound, which may move inputs backwards.
+     */
+    public void seek(Object lowerBound) {
+        for (Input<T> input : inputs) {
+            input.seek(lowerBound);
+        }
+        build();
+    }
+
+    /**
+     * @return a Spliterator over the remaining elements that splits in half the key range of the largest input
+     */
+    public Spliterator<T> spliterator() {
+        long size = 0;
+        for (Input<T> input : inputs) {
+            size += input.size();
+        }
+        return spliterator(size);
+    }
+
+    /**
+     * The estimate starts at the total size of the inputs and is halved by every split, since a split key
+     * from a middle tower halves the largest input's range. Duplicates and the skew of the other inputs
+     * make it inexact, so the Spliterator is not SIZED.
+     */
+    private Spliterator<T> spliterator(long size) {
+        return new Spliterator<>() {
+            long estimate = size;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if(!hasNext()) {
+                    return false;
+                }
+                action.accept(next());
+                return true;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer<? super T> action) {
+                while (hasNext()) {
+                    action.accept(next());
+                }
+            }
+
+            @Override
+            public Spliterator<T> trySplit() {
+                if(!hasNext()) {
+                    return null;
+                }
+                Input<T> largest = inputs.get(0);
+                for (Input<T> input : inputs) {
+                    if(input.size() > largest.size()) {
+                        largest = input;
+                    }
+                }
+                Object split = largest.splitKey(inputs.get(tree[0]).key(), hi);
+                if(split == null) {
+                    return null;
+                }
+                List<Input<T>> prefix = new ArrayList<>(inputs.size());
+                for (Input<T> input : inputs) {
+                    prefix.add(input.copy());
+                }
+                MergingIterator<T> head = new MergingIterator<>(prefix, distinct, split);
+                seek(split);
+                long half = estimate >>> 1;
+                estimate -= half;
+                return head.spliterator(half);
+            }
+
+            @Override
+            public long estimateSize() {
+                return estimate;
+            }
+
+            @Override
+            public int characteristics() {
+                return ORDERED | SORTED | NONNULL | (distinct ? DISTINCT : 0);
+            }
+
+            /**
+             * Sets are in natural order, and map entries in the natural order of their keys.
+             */
+            @Override
+            @SuppressWarnings("unchecked")
+            public Comparator<? super T> getComparator() {
+                if(inputs.isEmpty() || inputs.get(0) instanceof SetInput) {
+                    return null;
+                }
+                return (Comparator<? super T>) (Comparator<?>) Map.Entry.comparingByKey();
+            }
+        };
+    }
+    //endregion
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private static boolean below(Object key, Object hi) {
+        return hi == null || compare(key, hi) < 0;
+    }
+}
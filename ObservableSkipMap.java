@@ -0,0 +1,266 @@
+package util;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+/*SkipMap with a change feed
+ * Change<K,V> { long sequence; Kind kind; K key; V value; }
+ * Every put, entry setValue, removal and clear is numbered and queued for each subscriber, which receives
+ * the queued changes in batches of up to maxBatchSize, one batch per requested item, on the executor.
+ * Writers never block: a subscriber that falls more than bufferCapacity changes behind is failed with
+ * an IllegalStateException, and may resubscribe from a fresh snapshot.
+ * The map itself is not thread-safe, so mutations and subscriptions must come from the owning thread.
+ */
+
+public class ObservableSkipMap<K,V> extends SkipMap<K,V> implements Flow.Publisher<List<ObservableSkipMap.Change<K,V>>> {
+    public enum Kind {PUT, REMOVE, CLEAR}
+
+    /**
+     * A mutation. A PUT holds the new value, a REMOVE the removed value, and a CLEAR neither key nor value.
+     */
+    public record Change<K,V>(long sequence, Kind kind, K key, V value) {
+    }
+
+    /**
+     * A copy of the map as of a sequence number. The feed it was taken with delivers exactly the changes after it.
+     */
+    public record Snapshot<K,V>(long sequence, List<Map.Entry<K,V>> entries) implements Iterable<Map.Entry<K,V>> {
+        @Override
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return entries.iterator();
+        }
+    }
+
+    class ObservedEntry extends Entry<K,V> {
+        ObservedEntry(K key, V value) {
+            super(key, value);
+        }
+
+        /**
+         * Publishes the new value, unless the entry has been removed, e.g. by pollFirstEntry.
+         */
+        @Override
+        public V setValue(V value) {
+            V oldValue = super.setValue(value);
+            if(getEntry(key) == this) {
+                publish(Kind.PUT, key, value);
+            }
+            return oldValue;
+        }
+    }
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int DEFAULT_BUFFER_CAPACITY = 1 << 16;
+
+    private final transient Executor executor;
+    private final int maxBatchSize;
+    private final int bufferCapacity;
+    private final transient List<Feed> feeds = new CopyOnWriteArrayList<>();
+    private long sequence;
+    private boolean closed;
+
+    public ObservableSkipMap() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * @param executor the executor delivering to subscribers
+     * @param maxBatchSize the most changes delivered in one onNext
+     * @param bufferCapacity the most undelivered changes a subscriber may fall behind by
+     */
+    public ObservableSkipMap(Executor executor, int maxBatchSize, int bufferCapacity) {
+        if(maxBatchSize < 1 || bufferCapacity < 1) {
+            throw new IllegalArgumentException("Batch size: " + maxBatchSize + ", Buffer capacity: " + bufferCapacity);
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.maxBatchSize = maxBatchSize;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    //region Publish
+    /**
+     * Subscribes to the changes made from now on.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Change<K,V>>> subscriber) {
+        Feed feed = new Feed(Objects.requireNonNull(subscriber));
+        subscriber.onSubscribe(feed);
+        if(closed) {
+            feed.close();
+        } else {
+            feeds.add(feed);
+        }
+    }
+
+    /**
+     * Copies the map and subscribes to the changes made after the copy.
+     * @return the copy and the sequence number of the last change it includes
+     */
+    public Snapshot<K,V> subscribeFromSnapshot(Flow.Subscriber<? super List<Change<K,V>>> subscriber) {
+        List<Map.Entry<K,V>> entries = new ArrayList<>(size);
+        for (Entry<K,V> e = head.nextArr[0]; e != null; e = e.nextArr[0]) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(e.key, e.value));
+        }
+        Snapshot<K,V> snapshot = new Snapshot<>(sequence, Collections.unmodifiableList(entries));
+        subscribe(subscriber);
+        return snapshot;
+    }
+
+    /**
+     * @return the sequence number of the last change
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Completes every subscriber once it has received the changes made so far. Later changes are not published.
+     */
+    public void close() {
+        closed = true;
+        for (Feed feed : feeds) {
+            feed.close();
+        }
+        feeds.clear();
+    }
+
+    private void publish(Kind kind, K key, V value) {
+        if(closed) {
+            return;
+        }
+        Change<K,V> change = new Change<>(++sequence, kind, key, value);
+        for (Feed feed : feeds) {
+            feed.offer(change);
+        }
+    }
+    //endregion
+
+    //region Mutate
+    @Override
+    Entry<K,V> newEntry(K key, V value) {
+        publish(Kind.PUT, key, value);
+        return new ObservedEntry(key, value);
+    }
+
+    @Override
+    void remove(Entry<K,V> e) {
+        super.remove(e);
+        publish(Kind.REMOVE, e.key, e.value);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        publish(Kind.CLEAR, null, null);
+    }
+    //endregion
+
+    //region Feed
+    private final class Feed implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super List<Change<K,V>>> subscriber;
+        private final ArrayDeque<Change<K,V>> queue = new ArrayDeque<>();
+        private long demand;
+        private boolean scheduled;
+        private boolean completing;
+        private boolean terminated;
+        private Throwable failure;
+
+        Feed(Flow.Subscriber<? super List<Change<K,V>>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        synchronized void offer(Change<K,V> change) {
+            if(terminated || completing || failure != null) {
+                return;
+            }
+            if(queue.size() >= bufferCapacity) {
+                fail(new IllegalStateException("Subscriber fell " + bufferCapacity + " changes behind"));
+                return;
+            }
+            queue.add(change);
+            schedule();
+        }
+
+        synchronized void close() {
+            completing = true;
+            schedule();
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if(n <= 0) {
+                fail(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            schedule();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            terminated = true;
+            queue.clear();
+            feeds.remove(this);
+        }
+
+        private void fail(Throwable t) {
+            failure = t;
+            queue.clear();
+            feeds.remove(this);
+            schedule();
+        }
+
+        private void schedule() {
+            boolean ready = failure != null || (completing && queue.isEmpty()) || (demand > 0 && !queue.isEmpty());
+            if(!terminated && !scheduled && ready) {
+                scheduled = true;
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Delivers batches while there is demand, then any pending completion or failure.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                List<Change<K,V>> batch;
+                synchronized (this) {
+                    if(terminated) {
+                        scheduled = false;
+                        return;
+                    }
+                    if(failure != null || (completing && queue.isEmpty())) {
+                        terminated = true;
+                        scheduled = false;
+                        break;
+                    }
+                    if(demand == 0 || queue.isEmpty()) {
+                        scheduled = false;
+                        return;
+                    }
+                    batch = new ArrayList<>(Math.min(queue.size(), maxBatchSize));
+                    while (batch.size() < maxBatchSize && !queue.isEmpty()) {
+                        batch.add(queue.poll());
+                    }
+                    demand--;
+                }
+                try {
+                    subscriber.onNext(batch);
+                } catch (Throwable t) {
+                    cancel();
+                    subscriber.onError(t);
+                    return;
+                }
+            }
+            if(failure != null) {
+                subscriber.onError(failure);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+    //endregion
+}
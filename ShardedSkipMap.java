@@ -0,0 +1,430 @@
+package util;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+/*Range-partitioned SkipMap shards
+ * Shard<K,V> { K lo; SkipMap<K,V> map; ReentrantReadWriteLock lock; LongAdder ops; boolean retired; }
+ * The shards cover consecutive key ranges [lo, next lo), listed in an immutable layout that is replaced whole.
+ * A point operation routes by binary search and locks one shard. Splitting or merging builds new shards under
+ * the old shards' write locks, publishes a new layout and retires the old shards, so an operation that routed to
+ * a retired shard routes again. Split keys are medians of a SkipMap row sparse enough to be a small sample.
+ * Range scans and aggregates run one fork/join task per shard and concatenate in shard order.
+ */
+
+public class ShardedSkipMap<K,V> {
+    private final class Shard {
+        final K lo;//Inclusive lower bound, null for the first shard.
+        final SkipMap<K,V> map;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final LongAdder ops = new LongAdder();
+        boolean retired;//Guarded by lock.
+
+        Shard(K lo, SkipMap<K,V> map) {
+            this.lo = lo;
+            this.map = map;
+        }
+    }
+
+    private static final int SAMPLE_SIZE = 16;
+    private final int minShardSize;
+    private final int maxShardSize;
+    private volatile List<Shard> shards;
+    private final Object layoutLock = new Object();
+
+    public ShardedSkipMap() {
+        this(1 << 12, 1 << 16);
+    }
+
+    /**
+     * @param minShardSize the combined size below which adjacent cold shards are merged by rebalance()
+     * @param maxShardSize the size past which a shard is split
+     */
+    public ShardedSkipMap(int minShardSize, int maxShardSize) {
+        this(List.of(), 1, minShardSize, maxShardSize);
+    }
+
+    /**
+     * Constructs an empty map partitioned at quantiles of a sample of the expected keys.
+     * @param sample keys drawn from the expected distribution
+     * @param shardCount the number of shards to start with, fewer if the sample has fewer distinct keys
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedSkipMap(Collection<? extends K> sample, int shardCount, int minShardSize, int maxShardSize) {
+        if(shardCount < 1 || minShardSize < 0 || maxShardSize < 2 || minShardSize >= maxShardSize) {
+            throw new IllegalArgumentException("Shard count: " + shardCount + ", Min shard size: " + minShardSize
+                    + ", Max shard size: " + maxShardSize);
+        }
+        this.minShardSize = minShardSize;
+        this.maxShardSize = maxShardSize;
+        Object[] keys = new TreeSet<Object>(sample).toArray();
+        List<Shard> layout = new ArrayList<>(shardCount);
+        layout.add(new Shard(null, new SkipMap<>()));
+        for (int i = 1; i < shardCount && i < keys.length; i++) {
+            K lo = (K) keys[(int) ((long) i * keys.length / shardCount)];
+            if(compare(lo, layout.get(layout.size() - 1).lo) > 0) {
+                layout.add(new Shard(lo, new SkipMap<>()));
+            }
+        }
+        shards = List.copyOf(layout);
+    }
+
+    //region Route
+    /**
+     * @return the index in layout of the shard whose range holds key
+     */
+    private int indexOf(List<Shard> layout, Object key) {
+        int lo = 0, hi = layout.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if(compare(layout.get(mid).lo, key) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Locks the shard holding key, routing again while the one found has been retired.
+     */
+    private Shard lock(Object key, boolean write) {
+        while (true) {
+            List<Shard> layout = shards;
+            Shard s = layout.get(indexOf(layout, key));
+            Lock lock = write ? s.lock.writeLock() : s.lock.readLock();
+            lock.lock();
+            if(!s.retired) {
+                s.ops.increment();
+                return s;
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compares keys, null being the lowest bound.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        if(a == null || b == null) {
+            return a == b ? 0 : a == null ? -1 : 1;
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+    //endregion
+
+    //region Point
+    public V get(Object key) {
+        Shard s = lock(key, false);
+        try {
+            return s.map.get(key);
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsKey(Object key) {
+        Shard s = lock(key, false);
+        try {
+            return s.map.containsKey(key);
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Shard s = lock(key, true);
+        V oldValue;
+        boolean full;
+        try {
+            oldValue = s.map.put(key, value);
+            full = s.map.size() > maxShardSize;
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+        if(full) {
+            split(s);
+        }
+        return oldValue;
+    }
+
+    public V remove(Object key) {
+        Shard s = lock(key, true);
+        try {
+            return s.map.remove(key);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the sum of the shard sizes, each read under its lock, starting over from the new layout if a shard
+     * was retired meanwhile
+     */
+    public int size() {
+        retry:
+        while (true) {
+            int size = 0;
+            for (Shard s : shards) {
+                s.lock.readLock().lock();
+                try {
+                    if(s.retired) {
+                        continue retry;
+                    }
+                    size += s.map.size();
+                } finally {
+                    s.lock.readLock().unlock();
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int shardCount() {
+        return shards.size();
+    }
+    //endregion
+
+    //region Scatter Gather
+    /**
+     * Copies the entries with keys in [fromKey, toKey), a null bound being unbounded, scanning the shards in parallel.
+     * Each shard is read atomically, but shards are read at different times.
+     */
+    public List<Map.Entry<K,V>> scan(K fromKey, K toKey) {
+        List<Map.Entry<K,V>> result = new ArrayList<>();
+        for (List<Map.Entry<K,V>> part : gather(fromKey, toKey, this::copy)) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    /**
+     * Folds the values with keys in [fromKey, toKey) in key order, a null bound being unbounded, each shard in parallel.
+     * @param combine an associative operation on aggregates
+     */
+    public <A> A aggregate(K fromKey, K toKey, Function<? super V, ? extends A> measure, A identity, BinaryOperator<A> combine) {
+        A acc = identity;
+        for (A part : gather(fromKey, toKey, (s, range) -> {
+            A shardAcc = identity;
+            for (SkipMap.Entry<K,V> e = first(s, range[0]); e != null && below(e.key, range[1]); e = e.nextArr[0]) {
+                shardAcc = combine.apply(shardAcc, measure.apply(e.value));
+            }
+            return shardAcc;
+        })) {
+            acc = combine.apply(acc, part);
+        }
+        return acc;
+    }
+
+    /**
+     * Calls action for every entry with a key in [fromKey, toKey) in key order, iterating a copy taken by
+     * {@link #scan(Object, Object)}, so the action runs outside any lock and may modify the map.
+     */
+    public void forEach(K fromKey, K toKey, BiConsumer<? super K, ? super V> action) {
+        for (Map.Entry<K,V> e : scan(fromKey, toKey)) {
+            action.accept(e.getKey(), e.getValue());
+        }
+    }
+
+    private interface ShardTask<R> {
+        /**
+         * @param range the part of the requested range inside the shard, null bounds being unbounded
+         */
+        R apply(Object shard, Object[] range);
+    }
+
+    /**
+     * Runs task on every shard overlapping [fromKey, toKey) under its read lock, returning the results in key order.
+     * The range of a shard retired meanwhile is gathered again from the new layout.
+     */
+    private <R> List<R> gather(K fromKey, K toKey, ShardTask<R> task) {
+        List<Shard> layout = shards;
+        int first = fromKey == null ? 0 : indexOf(layout, fromKey);
+        int last = toKey == null ? layout.size() - 1 : indexOf(layout, toKey);
+        List<ForkJoinTask<List<R>>> tasks = new ArrayList<>(last - first + 1);
+        for (int i = first; i <= last; i++) {
+            Shard s = layout.get(i);
+            K lo = i == first ? fromKey : s.lo;
+            K hi = i == last ? toKey : layout.get(i + 1).lo;
+            if(lo != null && hi != null && compare(lo, hi) >= 0) {
+                continue;
+            }
+            tasks.add(ForkJoinTask.adapt(() -> {
+                s.lock.readLock().lock();
+                try {
+                    if(!s.retired) {
+                        return List.of(task.apply(s, new Object[]{lo, hi}));
+                    }
+                } finally {
+                    s.lock.readLock().unlock();
+                }
+                return gather(lo, hi, task);
+            }));
+        }
+        List<R> result = new ArrayList<>(tasks.size());
+        if(tasks.size() == 1) {
+            result.addAll(tasks.get(0).invoke());
+        } else {
+            for (ForkJoinTask<List<R>> t : ForkJoinTask.invokeAll(tasks)) {
+                result.addAll(t.join());
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map.Entry<K,V>> copy(Object shard, Object[] range) {
+        List<Map.Entry<K,V>> part = new ArrayList<>();
+        for (SkipMap.Entry<K,V> e = first(shard, range[0]); e != null && below(e.key, range[1]); e = e.nextArr[0]) {
+            part.add(new AbstractMap.SimpleImmutableEntry<>(e.key, e.value));
+        }
+        return part;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SkipMap.Entry<K,V> first(Object shard, Object lo) {
+        SkipMap<K,V> map = ((Shard) shard).map;
+        return lo == null ? map.head.nextArr[0] : map.ceilingEntry((K) lo);
+    }
+
+    private static boolean below(Object key, Object hi) {
+        return hi == null || compare(key, hi) < 0;
+    }
+    //endregion
+
+    //region Rebalance
+    /**
+     * Splits shards above the maximum size, or that took more than twice the mean share of operations since the
+     * last call while holding at least twice the minimum size, and merges adjacent pairs below the minimum
+     * combined size that took less than the mean share. Operations on other shards go on meanwhile.
+     */
+    public void rebalance() {
+        List<Shard> layout = shards;
+        long total = 0;
+        long[] ops = new long[layout.size()];
+        for (int i = 0; i < ops.length; i++) {
+            ops[i] = layout.get(i).ops.sumThenReset();
+            total += ops[i];
+        }
+        double mean = (double) total / ops.length;
+        for (int i = 0; i < ops.length; i++) {
+            Shard s = layout.get(i);
+            int size = sizeOf(s);
+            if(size > maxShardSize || (ops[i] > 2 * mean && size >= 2 * minShardSize && size >= 2)) {
+                split(s);
+            }
+        }
+        for (int i = 0; i + 1 < ops.length; i++) {
+            Shard a = layout.get(i), b = layout.get(i + 1);
+            if(ops[i] < mean && ops[i + 1] < mean && sizeOf(a) + sizeOf(b) < minShardSize && merge(a, b)) {
+                i++;
+            }
+        }
+    }
+
+    private int sizeOf(Shard s) {
+        s.lock.readLock().lock();
+        try {
+            return s.map.size();
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits s at the median of a sparse row of its map, unless it has been retired or holds fewer than 2 keys.
+     */
+    private void split(Shard s) {
+        s.lock.writeLock().lock();
+        try {
+            if(s.retired || s.map.size() < 2) {
+                return;
+            }
+            K mid = median(s.map);
+            Shard left = new Shard(s.lo, new SkipMap<>());
+            Shard right = new Shard(mid, new SkipMap<>());
+            for (SkipMap.Entry<K,V> e = s.map.head.nextArr[0]; e != null; e = e.nextArr[0]) {
+                (compare(e.key, mid) < 0 ? left : right).map.append(e.key, e.value);
+            }
+            replace(List.of(s), List.of(left, right));
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges adjacent shards a and b, unless either has been retired.
+     * @return true if they were merged
+     */
+    private boolean merge(Shard a, Shard b) {
+        a.lock.writeLock().lock();
+        b.lock.writeLock().lock();
+        try {
+            if(a.retired || b.retired) {
+                return false;
+            }
+            Shard merged = new Shard(a.lo, new SkipMap<>());
+            for (SkipMap.Entry<K,V> e = a.map.head.nextArr[0]; e != null; e = e.nextArr[0]) {
+                merged.map.append(e.key, e.value);
+            }
+            for (SkipMap.Entry<K,V> e = b.map.head.nextArr[0]; e != null; e = e.nextArr[0]) {
+                merged.map.append(e.key, e.value);
+            }
+            replace(List.of(a, b), List.of(merged));
+            return true;
+        } finally {
+            b.lock.writeLock().unlock();
+            a.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Publishes a layout with the consecutive shards old replaced by replacements, and retires old.
+     * The caller holds the write locks of old.
+     */
+    private void replace(List<Shard> old, List<Shard> replacements) {
+        synchronized (layoutLock) {
+            List<Shard> layout = new ArrayList<>(shards);
+            int i = layout.indexOf(old.get(0));
+            layout.subList(i, i + old.size()).clear();
+            layout.addAll(i, replacements);
+            shards = List.copyOf(layout);
+        }
+        for (Shard s : old) {
+            s.retired = true;
+        }
+    }
+
+    /**
+     * @return the median key of the highest row of map holding at least SAMPLE_SIZE keys, or of row 0.
+     * It is never the first key of a map of 2 or more.
+     */
+    private static <K,V> K median(SkipMap<K,V> map) {
+        for (int i = map.head.size() - 1; i >= 0; i--) {
+            int count = 0;
+            for (SkipMap.Entry<K,V> e = map.head.nextArr[i]; e != null; e = e.nextArr[i]) {
+                count++;
+            }
+            if(count >= SAMPLE_SIZE || i == 0) {
+                SkipMap.Entry<K,V> e = map.head.nextArr[i];
+                for (int j = count / 2; j > 0; j--) {
+                    e = e.nextArr[i];
+                }
+                return e.key;
+            }
+        }
+        throw new NoSuchElementException();
+    }
+    //endregion
+}
@@ -1,6 +1,9 @@
 package util;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 /*Bi-directional "Tower-Based" SkipList
 * Node<F> { F val; Node<F>[] nexts; Node<F>[] prevs; int[] dists;
 * TODO: SplitIterator
@@ -20,6 +23,7 @@ public class SkipList<E> extends AbstractSequentialList<E>
         Node<F>[] nextArr;
         Node<F>[] prevArr;
         int[] distArr;//Distance to next node.
+        long[] weightArr;//Weight from this node, inclusive, to next node, exclusive. Null unless weighted.
 
         public Node(F value, int depth) {
             this.value = value;
@@ -29,18 +33,34 @@ public class SkipList<E> extends AbstractSequentialList<E>
         }
 
         public Node(F value) {
-            this(value, Integer.numberOfTrailingZeros(RANDOM.nextInt() << 1));
+            this(value, randomDepth());
+        }
+
+        static int randomDepth() {
+            return Integer.numberOfTrailingZeros(RANDOM.nextInt() << 1);
         }
     }
 
     class SkipListIterator implements ListIterator<E>{
-        Node<E> curNode;
+        Node<E> curNode;//Node returned by next, null at the end.
+        Node<E> lastNode;//Node last returned, null after add or remove.
+        Node<E> root = head;
         int index = 0;
-        int lastIndex = -1;
-        boolean modified = true;
         public SkipListIterator(int index) {
             this.index = index;
-            curNode = getNode(index);
+            curNode = index == size ? null : getNode(index);
+        }
+
+        /**
+         * Moves onto the copied towers if a write after a lazy clone has copied them.
+         */
+        void sync() {
+            if(root != head) {
+                root = head;
+                boolean lastIsCur = lastNode != null && lastNode == curNode;
+                curNode = index == size ? null : getNode(index);
+                lastNode = lastNode == null ? null : lastIsCur ? curNode : getNode(index - 1);
+            }
         }
 
         @Override
@@ -53,28 +73,27 @@ public class SkipList<E> extends AbstractSequentialList<E>
             if(curNode == null) {
                 throw new NoSuchElementException();
             }
-            modified = false;
-            lastIndex = index;
+            sync();
+            lastNode = curNode;
             index++;
-            E value = curNode.value;
             curNode = curNode.nextArr[0];
-            return value;
+            return lastNode.value;
         }
 
         @Override
         public boolean hasPrevious() {
-            return curNode.prevArr[0] != null;
+            return index > 0;
         }
 
         @Override
         public E previous() {
-            if(curNode.prevArr[0] == null) {
+            if(index == 0) {
                 throw new NoSuchElementException();
             }
-            modified = false;
-            lastIndex = index;
+            sync();
             index--;
-            curNode = curNode.prevArr[0];
+            curNode = curNode == null ? head.prevArr[0] : curNode.prevArr[0];
+            lastNode = curNode;
             return curNode.value;
         }
 
@@ -90,31 +109,120 @@ public class SkipList<E> extends AbstractSequentialList<E>
 
         @Override
         public void remove() {
-            if(modified) {
+            if(lastNode == null) {
                 throw new IllegalStateException();
             }
-            SkipList.this.remove(index);
-            index--;
-            modified = true;
+            beforeWrite();
+            sync();
+            if(lastNode == curNode) {
+                curNode = curNode.nextArr[0];
+            } else {
+                index--;
+            }
+            unlink(lastNode);
+            lastNode = null;
         }
 
         @Override
         public void set(E e) {
-            if(modified) {
+            if(lastNode == null) {
                 throw new IllegalStateException();
             }
-            (lastIndex > index ? curNode : curNode.prevArr[0]).value = e;
+            beforeWrite();
+            sync();
+            setValue(lastNode, e);
+        }
+
+        @Override
+        public void add(E e) {
+            beforeWrite();
+            sync();
+            lastNode = null;
+            linkBefore(curNode, e);
+            index++;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            sync();
+            for(; curNode != null; curNode = curNode.nextArr[0]) {
+                lastNode = curNode;
+                index++;
+                action.accept(curNode.value);
+            }
+        }
+    }
+
+    /**
+     * ListIterator over the reversed list, moving a SkipListIterator the other way.
+     */
+    class DescendingListIterator implements ListIterator<E>{
+        final SkipListIterator it;
+        public DescendingListIterator(int index) {
+            it = new SkipListIterator(size - index);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasPrevious();
+        }
+
+        @Override
+        public E next() {
+            return it.previous();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return it.hasNext();
+        }
+
+        @Override
+        public E previous() {
+            return it.next();
+        }
+
+        @Override
+        public int nextIndex() {
+            return size - it.nextIndex();
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex() - 1;
+        }
+
+        @Override
+        public void remove() {
+            it.remove();
+        }
+
+        @Override
+        public void set(E e) {
+            it.set(e);
         }
 
         @Override
         public void add(E e) {
-            modified = true;
-            SkipList.this.add(index++, e);
+            //Insert at the cursor, then step back over the element so next is unchanged.
+            it.add(e);
+            it.index--;
+            it.curNode = it.curNode == null ? head.prevArr[0] : it.curNode.prevArr[0];
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            while(it.hasPrevious()) {
+                action.accept(it.previous());
+            }
         }
     }
 
     class ForwardIterator implements Iterator<E> {
         Node<E> curNode;
+        Node<E> lastNode;
+        Node<E> root = head;
+        int index;
         public ForwardIterator() {
             curNode = head == null ? null : head.nextArr[0];
         }
@@ -126,14 +234,52 @@ public class SkipList<E> extends AbstractSequentialList<E>
 
         @Override
         public E next() {
-            E value = curNode.value;
+            if(curNode == null) {
+                throw new NoSuchElementException();
+            }
+            sync();
+            lastNode = curNode;
+            index++;
             curNode = curNode.nextArr[0];
-            return value;
+            return lastNode.value;
+        }
+
+        @Override
+        public void remove() {
+            if(lastNode == null) {
+                throw new IllegalStateException();
+            }
+            beforeWrite();
+            sync();
+            unlink(lastNode);
+            index--;
+            lastNode = null;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            sync();
+            for(; curNode != null; curNode = curNode.nextArr[0]) {
+                lastNode = curNode;
+                index++;
+                action.accept(curNode.value);
+            }
+        }
+
+        void sync() {
+            if(root != head) {
+                root = head;
+                curNode = index == size ? null : getNode(index);
+                lastNode = lastNode == null ? null : getNode(index - 1);
+            }
         }
     }
 
     class DescendingIterator implements Iterator<E>{
         Node<E> curNode;
+        Node<E> lastNode;
+        Node<E> root = head;
+        int index = size - 1;
         public DescendingIterator(){
             curNode = head == null ? null : head.prevArr[0];
         }
@@ -143,16 +289,249 @@ public class SkipList<E> extends AbstractSequentialList<E>
         }
         @Override
         public E next() {
-            E value = curNode.value;
+            if(curNode == null) {
+                throw new NoSuchElementException();
+            }
+            sync();
+            lastNode = curNode;
+            index--;
             curNode = curNode.prevArr[0];
+            return lastNode.value;
+        }
+        @Override
+        public void remove() {
+            if(lastNode == null) {
+                throw new IllegalStateException();
+            }
+            beforeWrite();
+            sync();
+            unlink(lastNode);
+            lastNode = null;
+        }
+        void sync() {
+            if(root != head) {
+                root = head;
+                curNode = index < 0 ? null : getNode(index);
+                lastNode = lastNode == null ? null : getNode(index + 1);
+            }
+        }
+    }
+
+    /**
+     * View of the elements in [offset, offset + size), resolving each position with one descent from head.
+     */
+    class SubList extends AbstractList<E> {
+        final SubList parent;
+        final int offset;
+        int size;
+        public SubList(SubList parent, int offset, int size) {
+            this.parent = parent;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public E get(int index) {
+            Objects.checkIndex(index, size);
+            return getNode(offset + index).value;
+        }
+
+        @Override
+        public E set(int index, E element) {
+            Objects.checkIndex(index, size);
+            return setValue(getNode(offset + index), element);
+        }
+
+        @Override
+        public void add(int index, E element) {
+            checkPositionIndex(index);
+            SkipList.this.add(offset + index, element);
+            resize(1);
+        }
+
+        @Override
+        public E remove(int index) {
+            Objects.checkIndex(index, size);
+            E value = SkipList.this.remove(offset + index);
+            resize(-1);
             return value;
         }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            if(fromIndex < 0 || fromIndex > toIndex || toIndex > size) {
+                throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size);
+            }
+            SkipList.this.removeRange(offset + fromIndex, offset + toIndex);
+            resize(fromIndex - toIndex);
+        }
+
+        @Override
+        public void clear() {
+            removeRange(0, size);
+        }
+
+        @Override
+        public Object[] toArray() {
+            Object[] result = new Object[size];
+            if(size > 0) {
+                Node<E> n = getNode(offset);
+                for(int i = 0; i < size; i++, n = n.nextArr[0]) {
+                    result[i] = n.value;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T[] toArray(T[] a) {
+            if (a.length < size)
+                a = (T[])java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+            if(size > 0) {
+                Node<E> n = getNode(offset);
+                for(int i = 0; i < size; i++, n = n.nextArr[0]) {
+                    ((Object[]) a)[i] = n.value;
+                }
+            }
+            if (a.length > size) {
+                a[size] = null;
+            }
+            return a;
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if(size > 0) {
+                Node<E> n = getNode(offset);
+                for(int i = 0; i < size; i++, n = n.nextArr[0]) {
+                    action.accept(n.value);
+                }
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator<E> listIterator(int index) {
+            checkPositionIndex(index);
+            SkipListIterator it = new SkipListIterator(offset + index);
+            return new ListIterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return it.index < offset + size;
+                }
+
+                @Override
+                public E next() {
+                    if(!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return it.next();
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return it.index > offset;
+                }
+
+                @Override
+                public E previous() {
+                    if(!hasPrevious()) {
+                        throw new NoSuchElementException();
+                    }
+                    return it.previous();
+                }
+
+                @Override
+                public int nextIndex() {
+                    return it.index - offset;
+                }
+
+                @Override
+                public int previousIndex() {
+                    return it.index - offset - 1;
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                    resize(-1);
+                }
+
+                @Override
+                public void set(E e) {
+                    it.set(e);
+                }
+
+                @Override
+                public void add(E e) {
+                    it.add(e);
+                    resize(1);
+                }
+
+                @Override
+                public void forEachRemaining(Consumer<? super E> action) {
+                    while(hasNext()) {
+                        action.accept(it.next());
+                    }
+                }
+            };
+        }
+
+        @Override
+        public List<E> subList(int fromIndex, int toIndex) {
+            Objects.checkFromToIndex(fromIndex, toIndex, size);
+            return new SubList(this, offset + fromIndex, toIndex - fromIndex);
+        }
+
+        private void checkPositionIndex(int index) {
+            if(index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
+            }
+        }
+
+        private void resize(int delta) {
+            for(SubList l = this; l != null; l = l.parent) {
+                l.size += delta;
+            }
+        }
     }
     //endregion
 
     private Node<E> head = new Node<>(null, MAX_DEPTH);
     private int size;
 
+    //Free nodes by depth, chained through nextArr[0]. Null unless recycling is enabled.
+    private transient Node<E>[] pool;
+    private transient int[] poolSize;
+    private transient int poolCapacity;
+
+    //Node, or TreeSet of nodes by position, holding each value. Null unless value indexing is enabled.
+    private transient HashMap<Object, Object> valueIndex;
+
+    //Weight of each new or replaced value. Null unless weighting is enabled.
+    private transient ToLongFunction<? super E> weigher;
+
+    //True while lazy clones share the nodes, which are then copied before the next write.
+    private transient boolean shared;
+
+    //Index of the first node not yet reallocated by an unfinished incremental compaction.
+    private transient int compactCursor;
+
+    //Rows new nodes are capped at, 0 unless ingesting, and the size when ingesting began.
+    private transient int ingestLevels;
+    private transient int ingestFrom;
+
     private static final int MAX_DEPTH = 32;
     private static final Random RANDOM = new Random();
 
@@ -211,7 +590,11 @@ public class SkipList<E> extends AbstractSequentialList<E>
         if (size == 0) {
             throw new NoSuchElementException();
         } else {
+            beforeWrite();
             Node<E> n = head.nextArr[0];
+            if(valueIndex != null) {
+                indexRemove(n);
+            }
             int i = MAX_DEPTH - 1;
             //Row[depth >= n.length]
             for(; i >= n.distArr.length; i--) {
@@ -230,7 +613,7 @@ public class SkipList<E> extends AbstractSequentialList<E>
                 head.distArr[i] += n.distArr[i] - 1;
             }
             size--;
-            return n.value;
+            return release(n);
         }
     }
 
@@ -244,7 +627,11 @@ public class SkipList<E> extends AbstractSequentialList<E>
         if (size == 0) {
             throw new NoSuchElementException();
         } else {
+            beforeWrite();
             Node<E> n = head.prevArr[0];
+            if(valueIndex != null) {
+                indexRemove(n);
+            }
             int i = MAX_DEPTH - 1;
             //Row[depth >= n.length][-1] == null
             for(; i >= n.distArr.length && head.prevArr[i] == null; i--) {
@@ -267,7 +654,7 @@ public class SkipList<E> extends AbstractSequentialList<E>
                 n.prevArr[i].distArr[i] += n.distArr[i] - 1;
             }
             size--;
-            return n.value;
+            return release(n);
         }
     }
 
@@ -277,7 +664,8 @@ public class SkipList<E> extends AbstractSequentialList<E>
      */
     @Override
     public void addFirst(E e) {
-        Node<E> n = new Node<>(e);
+        beforeWrite();
+        Node<E> n = newNode(e);
         int i = MAX_DEPTH - 1;
         //Rows[depth >= n.length][0] == null
         for(; i >= n.distArr.length; i--) {
@@ -298,6 +686,12 @@ public class SkipList<E> extends AbstractSequentialList<E>
             n.distArr[i] = head.distArr[i];
             head.distArr[i] = 1;
         }
+        if(weigher != null) {
+            reweigh(head, n);
+        }
+        if(valueIndex != null) {
+            indexAdd(n);
+        }
         size++;
     }
 
@@ -307,7 +701,8 @@ public class SkipList<E> extends AbstractSequentialList<E>
      */
     @Override
     public void addLast(E e) {
-        Node<E> n = new Node<>(e);
+        beforeWrite();
+        Node<E> n = newNode(e);
         int i = MAX_DEPTH - 1;
         //Rows[depth >= n.length][-1] == null
         for(; i >= n.distArr.length && head.prevArr[i] == null; i--) {
@@ -329,6 +724,12 @@ public class SkipList<E> extends AbstractSequentialList<E>
             head.prevArr[i] = n;
         }
         Arrays.fill(n.distArr, 1);
+        if(weigher != null) {
+            reweigh(n.prevArr[0] == null ? head : n.prevArr[0], n);
+        }
+        if(valueIndex != null) {
+            indexAdd(n);
+        }
         size++;
     }
 
@@ -340,6 +741,9 @@ public class SkipList<E> extends AbstractSequentialList<E>
      */
     @Override
     public boolean contains(Object o) {
+        if(valueIndex != null) {
+            return valueIndex.containsKey(o);
+        }
         return indexOf(o) >= 0;
     }
 
@@ -427,15 +831,27 @@ public class SkipList<E> extends AbstractSequentialList<E>
     @Override
     public void clear() {
         size = 0;
+        if(valueIndex != null) {
+            valueIndex.clear();
+        }
+        if(shared) {
+            //Leave the shared nodes to the lazy clones.
+            shared = false;
+            head = new Node<>(null, MAX_DEPTH);
+            head.weightArr = weigher == null ? null : new long[MAX_DEPTH];
+        }
         Arrays.fill(head.distArr, 1);
         Arrays.fill(head.nextArr, null);
         Arrays.fill(head.prevArr, null);
+        if(weigher != null) {
+            Arrays.fill(head.weightArr, 0);
+        }
     }
 
     // Positional Access Operations
     private Node<E> getNode(int index) {
         if(index < 0 || index >= size) {
-            throw new NoSuchElementException();
+            throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
         }
         Node<E> curNode = head;
         index++;
@@ -468,11 +884,10 @@ public class SkipList<E> extends AbstractSequentialList<E>
      */
     @Override
     public E set(int index, E element) {
+        beforeWrite();
         Node<E> n = getNode(index);
         if(n != null) {
-            E value = n.value;
-            n.value = element;
-            return value;
+            return setValue(n, element);
         }
         throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
     }
@@ -488,7 +903,8 @@ public class SkipList<E> extends AbstractSequentialList<E>
     @Override
     public void add(int index, E element) {
         if(index >= 0 && index <= size) {
-            Node<E> n =new Node<>(element);
+            beforeWrite();
+            Node<E> n = newNode(element);
             Node<E> curNode = head;
             int i = MAX_DEPTH - 1;
             //Rows[depth >= n.length][0]
@@ -518,6 +934,12 @@ public class SkipList<E> extends AbstractSequentialList<E>
                 n.distArr[i] = curNode.distArr[i] - index;
                 curNode.distArr[i] = index + 1;
             }
+            if(weigher != null) {
+                reweigh(n.prevArr[0] == null ? head : n.prevArr[0], n);
+            }
+            if(valueIndex != null) {
+                indexAdd(n);
+            }
             size++;
         } else {
             throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
@@ -536,6 +958,11 @@ public class SkipList<E> extends AbstractSequentialList<E>
     @Override
     public E remove(int index) {
         if(index >= 0 && index < size) {
+            beforeWrite();
+            if(valueIndex != null) {
+                //Spans are shortened on the way down, so the node is unindexed before descending to it.
+                indexRemove(getNode(index));
+            }
             Node<E> curNode = head;
             int i = MAX_DEPTH - 1;
             //Rows[depth >= n.length][0]
@@ -553,7 +980,7 @@ public class SkipList<E> extends AbstractSequentialList<E>
                         (curNode.nextArr[i] == null ? head : curNode.nextArr[i]).prevArr[i] = curNode.prevArr[i];
                     }
                     size--;
-                    return curNode.value;
+                    return release(curNode);
                 }
                 curNode.distArr[i]--;
                 i--;
@@ -563,6 +990,133 @@ public class SkipList<E> extends AbstractSequentialList<E>
         }
     }
 
+    /**
+     * <p>Removes from this list all of the elements whose index is between fromIndex, inclusive, and toIndex, exclusive,
+     * unlinking the range at every row at once rather than element by element.
+     * Shifts any succeeding elements to the left (reduces their index).</p>
+     * @param fromIndex index of first element to be removed
+     * @param toIndex index after last element to be removed
+     * @throws IndexOutOfBoundsException if the range is out of bounds (fromIndex < 0 || fromIndex > toIndex || toIndex > size())
+     */
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if(fromIndex < 0 || fromIndex > toIndex || toIndex > size) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size);
+        }
+        int count = toIndex - fromIndex;
+        if(count == 0) {
+            return;
+        }
+        beforeWrite();
+        if(valueIndex != null) {
+            Node<E> n = getNode(fromIndex);
+            for(int i = 0; i < count; i++, n = n.nextArr[0]) {
+                indexRemove(n);
+            }
+        }
+        //Per row, the last node before the range and the last node in or before it, with their positions.
+        Node<E> from = head, to = head;
+        int fromPos = 0, toPos = 0;
+        Node<E> first = null;
+        for(int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (from.nextArr[i] != null && fromPos + from.distArr[i] <= fromIndex) {
+                fromPos += from.distArr[i];
+                from = from.nextArr[i];
+            }
+            if(toPos < fromPos) {
+                to = from;
+                toPos = fromPos;
+            }
+            while (to.nextArr[i] != null && toPos + to.distArr[i] <= toIndex) {
+                toPos += to.distArr[i];
+                to = to.nextArr[i];
+            }
+            if(from == to) {
+                from.distArr[i] -= count;
+            } else {
+                if(i == 0) {
+                    first = from.nextArr[0];
+                }
+                from.distArr[i] = toPos + to.distArr[i] - fromPos - count;
+                from.nextArr[i] = to.nextArr[i];
+                (to.nextArr[i] == null ? head : to.nextArr[i]).prevArr[i] = from == head ? null : from;
+            }
+        }
+        size -= count;
+        for(int i = 0; i < count; i++) {
+            Node<E> next = first.nextArr[0];
+            recycle(first);
+            first = next;
+        }
+        if(weigher != null) {
+            reweigh(from, null);
+        }
+    }
+
+    /**
+     * Unlinks a node without descending, climbing its back-links to shorten the spans over it.
+     */
+    private E unlink(Node<E> n) {
+        if(valueIndex != null) {
+            indexRemove(n);
+        }
+        int i = 0;
+        //Rows[depth < n.length]
+        for(; i < n.nextArr.length; i++) {
+            Node<E> prev = n.prevArr[i] == null ? head : n.prevArr[i];
+            prev.nextArr[i] = n.nextArr[i];
+            prev.distArr[i] += n.distArr[i] - 1;
+            (n.nextArr[i] == null ? head : n.nextArr[i]).prevArr[i] = n.prevArr[i];
+        }
+        //Rows[depth >= n.length]
+        Node<E> curNode = n;
+        for(; i < MAX_DEPTH; i++) {
+            while(curNode != head && curNode.nextArr.length <= i) {
+                Node<E> prev = curNode.prevArr[curNode.nextArr.length - 1];
+                curNode = prev == null ? head : prev;
+            }
+            curNode.distArr[i]--;
+        }
+        size--;
+        return release(n);
+    }
+
+    /**
+     * Links a new node before next, or last if next is null, without descending.
+     * The towers before it are found by climbing back-links from its predecessor, counting the distance climbed.
+     */
+    private void linkBefore(Node<E> next, E e) {
+        Node<E> n = newNode(e);
+        Node<E> prev = next == null ? head.prevArr[0] : next.prevArr[0];
+        Node<E> curNode = prev == null ? head : prev;
+        int dist = 1;//From curNode to n.
+        for(int i = 0; i < MAX_DEPTH; i++) {
+            while(curNode != head && curNode.nextArr.length <= i) {
+                int j = curNode.nextArr.length - 1;
+                Node<E> p = curNode.prevArr[j] == null ? head : curNode.prevArr[j];
+                dist += p.distArr[j];
+                curNode = p;
+            }
+            if(i < n.nextArr.length) {
+                n.nextArr[i] = curNode.nextArr[i];
+                (n.nextArr[i] == null ? head : n.nextArr[i]).prevArr[i] = n;
+                n.prevArr[i] = curNode == head ? null : curNode;
+                curNode.nextArr[i] = n;
+                n.distArr[i] = curNode.distArr[i] + 1 - dist;
+                curNode.distArr[i] = dist;
+            } else {
+                curNode.distArr[i]++;
+            }
+        }
+        if(weigher != null) {
+            reweigh(prev == null ? head : prev, n);
+        }
+        if(valueIndex != null) {
+            indexAdd(n);
+        }
+        size++;
+    }
+
     // Search Operations
     /**
      * <p>Returns the index of the first occurrence of the specified element in this list,
@@ -575,6 +1129,10 @@ public class SkipList<E> extends AbstractSequentialList<E>
      */
     @Override
     public int indexOf(Object o) {
+        if(valueIndex != null) {
+            Node<E> n = indexedNode(o, false);
+            return n == null ? -1 : indexOf(n);
+        }
         int index = 0;
         if(size > 0) {
             if (o == null) {
@@ -605,6 +1163,10 @@ public class SkipList<E> extends AbstractSequentialList<E>
      */
     @Override
     public int lastIndexOf(Object o) {
+        if(valueIndex != null) {
+            Node<E> n = indexedNode(o, true);
+            return n == null ? -1 : indexOf(n);
+        }
         int index = size;
         if(size > 0) {
             if (o == null) {
@@ -798,12 +1360,51 @@ public class SkipList<E> extends AbstractSequentialList<E>
      */
     @Override
     public ListIterator<E> listIterator(int index) {
-        if(index < 0 || index < size) {
+        if(index < 0 || index > size) {
             throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
         }
         return new SkipListIterator(index);
     }
 
+    /**
+     * <p>Returns a list-iterator of the elements in this list in reverse sequence,
+     * starting at the specified position in the reversed list, so index 0 starts at the last element.
+     * Its add, remove and set act on this list at the iterator's position, as for a list-iterator of the reversed list.</p>
+     * @param index index in the reversed list of the first element to be returned (by a call to next)
+     * @return a ListIterator of the elements in this list in reverse sequence
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index > size())
+     */
+    public ListIterator<E> descendingListIterator(int index) {
+        if(index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
+        }
+        return new DescendingListIterator(index);
+    }
+
+    /**
+     * @return a list-iterator of the elements in this list in reverse sequence, starting at the last element
+     * @see SkipList#descendingListIterator(int)
+     */
+    public ListIterator<E> descendingListIterator() {
+        return new DescendingListIterator(0);
+    }
+
+    /**
+     * <p>Returns a view of the portion of this list between the specified fromIndex, inclusive, and toIndex, exclusive.
+     * Positional access descends once from the head, offset by fromIndex, clear unlinks the range at once,
+     * and toArray and forEach walk the bottom row from the first element of the range.</p>
+     * <p>The view is valid only while this list is not structurally modified other than through the view.</p>
+     * @param fromIndex low endpoint (inclusive) of the subList
+     * @param toIndex high endpoint (exclusive) of the subList
+     * @return a view of the specified range within this list
+     * @throws IndexOutOfBoundsException for an illegal endpoint index value (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+     */
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size);
+        return new SubList(null, fromIndex, toIndex - fromIndex);
+    }
+
     @Override
     public Iterator<E> descendingIterator() {
         return new DescendingIterator();
@@ -815,20 +1416,194 @@ public class SkipList<E> extends AbstractSequentialList<E>
     }
 
     /**
-     * <p>Returns a shallow copy of this LinkedList. (The elements themselves are not cloned.)</p>
-     * @return a shallow copy of this LinkedList instance
+     * <p>Returns a shallow copy of this SkipList. (The elements themselves are not cloned.)</p>
+     * <p>The towers are copied in one pass along the bottom row, keeping their heights and spans.
+     * The copy has its own empty node pool and value index, and the same weigher.</p>
+     * @return a shallow copy of this SkipList instance
      * @see java.lang.Cloneable
      */
     @Override
+    @SuppressWarnings("unchecked")
     public Object clone() throws CloneNotSupportedException {
         SkipList<E> clone = (SkipList<E>) super.clone();
+        clone.head = copyTowers(false);
+        clone.shared = false;
+        clone.pool = null;
+        clone.poolSize = null;
+        clone.setNodePoolCapacity(poolCapacity);
+        if(valueIndex != null) {
+            clone.valueIndex = null;
+            clone.setValueIndexed(true);
+        }
+        return clone;
+    }
 
-        clone.head = null;
-        clone.size = 0;
-        for (Node<E> x = head.nextArr[0]; x != null; x = x.nextArr[0])
-            clone.add(x.value);
+    /**
+     * <p>Returns an unmodifiable clone of this list in O(1), deferring the copy to the next write.</p>
+     * <p>The clone shares the nodes of this list. The first write to this list after the call copies all of
+     * the towers in O(n), as {@link SkipList#clone()} does, and this list continues on the copy. This is not
+     * copy-on-write per node: a write costs O(n) once per batch of lazy clones, however little it changes,
+     * and only lazy clones taken between the same two writes share that cost.
+     * Iterators of this list follow it onto the copy.</p>
+     * @return an unmodifiable view of the elements of this list at the time of the call
+     */
+    public List<E> lazyClone() {
+        SkipList<E> view = new SkipList<>();
+        view.head = head;
+        view.size = size;
+        shared = true;
+        return Collections.unmodifiableList(view);
+    }
 
-        return clone;
+    /**
+     * Copies the nodes shared with lazy clones before a write.
+     */
+    private void beforeWrite() {
+        if(shared) {
+            shared = false;
+            head = copyTowers(false);
+            if(valueIndex != null) {
+                valueIndex = null;
+                setValueIndexed(true);
+            }
+        }
+    }
+
+    /**
+     * Copies the towers in one pass along the bottom row, linking each copy after the last copy reaching its rows.
+     * @param rebalance whether to give the copy at position p, from 1, one row more than p has trailing zeros,
+     *                  instead of the depth of the node copied, and to recompute the spans
+     * @return the head of the copy
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E> copyTowers(boolean rebalance) {
+        Node<E> copy = new Node<>(null, MAX_DEPTH);
+        System.arraycopy(head.distArr, 0, copy.distArr, 0, MAX_DEPTH);
+        if(head.weightArr != null) {
+            copy.weightArr = rebalance ? new long[MAX_DEPTH] : head.weightArr.clone();
+        }
+        Node<E>[] last = new Node[MAX_DEPTH];
+        Arrays.fill(last, copy);
+        int[] lastPos = new int[MAX_DEPTH];
+        int pos = 0;
+        for (Node<E> x = head.nextArr[0]; x != null; x = x.nextArr[0]) {
+            pos++;
+            int depth = rebalance ? Math.min(Integer.numberOfTrailingZeros(pos) + 1, MAX_DEPTH) : x.nextArr.length;
+            Node<E> n = new Node<>(x.value, depth);
+            if(rebalance) {
+                if(x.weightArr != null) {
+                    n.weightArr = new long[depth];
+                    n.weightArr[0] = x.weightArr[0];
+                }
+            } else {
+                System.arraycopy(x.distArr, 0, n.distArr, 0, depth);
+                if(x.weightArr != null) {
+                    n.weightArr = x.weightArr.clone();
+                }
+            }
+            for(int i = 0; i < depth; i++) {
+                last[i].nextArr[i] = n;
+                n.prevArr[i] = last[i] == copy ? null : last[i];
+                if(rebalance) {
+                    last[i].distArr[i] = pos - lastPos[i];
+                    lastPos[i] = pos;
+                }
+                last[i] = n;
+            }
+        }
+        for(int i = 0; i < MAX_DEPTH; i++) {
+            copy.prevArr[i] = last[i] == copy ? null : last[i];
+        }
+        if(rebalance) {
+            for(int i = 0; i < MAX_DEPTH; i++) {
+                last[i].distArr[i] = size + 1 - lastPos[i];
+            }
+            if(copy.weightArr != null) {
+                for (int i = 1; i < MAX_DEPTH; i++) {
+                    for (Node<E> n = copy; n != null; n = n.nextArr[i]) {
+                        fold(n, i);
+                    }
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * <p>Reallocates every node in list order, in O(n), so that a traversal walks nodes allocated together
+     * instead of nodes scattered by a history of inserts and removes.
+     * Free nodes in the pool are left as they are.</p>
+     * @param rebalance whether to rebuild the towers at depths by position instead of keeping their random depths:
+     *                  every second node then reaches row 1, every fourth row 2, and so on,
+     *                  and no row above log2(n) is left in use
+     */
+    public void compact(boolean rebalance) {
+        shared = false;
+        head = copyTowers(rebalance);
+        compactCursor = 0;
+        if(valueIndex != null) {
+            valueIndex = null;
+            setValueIndexed(true);
+        }
+    }
+
+    /**
+     * <p>Reallocates nodes in list order, keeping their depths and spans, until every node has been or the time is up,
+     * checking the time every 64 nodes.
+     * The next call resumes at the index where this one stopped, and writes in between are allowed,
+     * though nodes they shift past that index are not reallocated.</p>
+     * @param timeout the time to spend
+     * @param unit the unit of the timeout
+     * @return true if the compaction is complete, false if time ran out
+     */
+    public boolean compact(long timeout, TimeUnit unit) {
+        if(shared) {
+            //Copying the shared towers reallocates every node.
+            beforeWrite();
+            compactCursor = 0;
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int index = Math.min(compactCursor, size);
+        Node<E> x = index == size ? null : getNode(index);
+        //A new head sends iterators back through getNode() before they write.
+        Node<E> h = new Node<>(null, MAX_DEPTH);
+        System.arraycopy(head.nextArr, 0, h.nextArr, 0, MAX_DEPTH);
+        System.arraycopy(head.prevArr, 0, h.prevArr, 0, MAX_DEPTH);
+        System.arraycopy(head.distArr, 0, h.distArr, 0, MAX_DEPTH);
+        if(head.weightArr != null) {
+            h.weightArr = head.weightArr.clone();
+        }
+        head = h;
+        for (; x != null; index++) {
+            if(((index - compactCursor) & 63) == 63 && System.nanoTime() - deadline > 0) {
+                compactCursor = index;
+                return false;
+            }
+            Node<E> next = x.nextArr[0];
+            int depth = x.nextArr.length;
+            Node<E> n = new Node<>(x.value, depth);
+            System.arraycopy(x.distArr, 0, n.distArr, 0, depth);
+            if(x.weightArr != null) {
+                n.weightArr = x.weightArr.clone();
+            }
+            if(valueIndex != null) {
+                indexRemove(x);
+            }
+            //x keeps its links, so an iterator standing on it walks on.
+            for(int i = 0; i < depth; i++) {
+                n.prevArr[i] = x.prevArr[i];
+                n.nextArr[i] = x.nextArr[i];
+                (n.prevArr[i] == null ? head : n.prevArr[i]).nextArr[i] = n;
+                (n.nextArr[i] == null ? head : n.nextArr[i]).prevArr[i] = n;
+            }
+            if(valueIndex != null) {
+                indexAdd(n);
+            }
+            x = next;
+        }
+        compactCursor = 0;
+        return true;
     }
 
     /**
@@ -898,6 +1673,520 @@ public class SkipList<E> extends AbstractSequentialList<E>
         return a;
     }
 
+    //region Node Pool
+    /**
+     * <p>Enables or disables recycling of removed nodes.
+     * While enabled, nodes unlinked by the removal operations are kept in free lists by tower depth,
+     * holding at most {@code capacity} nodes per depth, and are reused by the insertion operations
+     * instead of allocating a new node and its arrays.
+     * Steady-state Deque traffic such as {@link SkipList#addLast(E)} paired with {@link SkipList#removeFirst()}
+     * is then allocation-free.</p>
+     * <p>The pool belongs to this list and, like the list itself, is not thread-safe.
+     * Iterators must not be used after the node they are positioned on has been removed.</p>
+     * @param capacity the maximum number of free nodes kept per depth, or 0 to disable recycling
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    @SuppressWarnings("unchecked")
+    public void setNodePoolCapacity(int capacity) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("Capacity: " + capacity);
+        }
+        if(capacity == 0) {
+            pool = null;
+            poolSize = null;
+        } else if(pool == null) {
+            pool = new Node[MAX_DEPTH];
+            poolSize = new int[MAX_DEPTH];
+        } else {
+            //Drop free nodes above the new capacity.
+            for(int i = 0; i < MAX_DEPTH; i++) {
+                for(; poolSize[i] > capacity; poolSize[i]--) {
+                    pool[i] = pool[i].nextArr[0];
+                }
+            }
+        }
+        poolCapacity = capacity;
+    }
+
+    /**
+     * @return the maximum number of free nodes kept per depth, or 0 if recycling is disabled
+     */
+    public int getNodePoolCapacity() {
+        return poolCapacity;
+    }
+
+    /**
+     * Returns a node for a value about to be linked, reusing a free node if the pool has one.
+     */
+    private Node<E> newNode(E e) {
+        Node<E> n;
+        int depth = Node.randomDepth();
+        if(ingestLevels > 0 && depth > ingestLevels) {
+            depth = ingestLevels;
+        }
+        if(pool == null) {
+            n = new Node<>(e, depth);
+        } else {
+            n = pool[depth - 1];
+            if(n == null) {
+                n = new Node<>(e, depth);
+            } else {
+                pool[depth - 1] = n.nextArr[0];
+                poolSize[depth - 1]--;
+                n.nextArr[0] = null;
+                n.value = e;
+            }
+        }
+        if(weigher != null) {
+            if(n.weightArr == null) {
+                n.weightArr = new long[n.nextArr.length];
+            }
+            n.weightArr[0] = weigh(e);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the value of an unlinked node, keeping the node for reuse if the pool has room.
+     */
+    private E release(Node<E> n) {
+        if(weigher != null) {
+            //The back-links of an unlinked node still lead to its old predecessors.
+            reweigh(n.prevArr[0] == null ? head : n.prevArr[0], null);
+        }
+        return recycle(n);
+    }
+
+    /**
+     * Returns the value of an unlinked node whose weights are already accounted for.
+     */
+    private E recycle(Node<E> n) {
+        E value = n.value;
+        if(pool != null) {
+            int depth = n.nextArr.length;
+            if(poolSize[depth - 1] < poolCapacity) {
+                n.value = null;
+                Arrays.fill(n.prevArr, null);
+                Arrays.fill(n.nextArr, null);
+                n.nextArr[0] = pool[depth - 1];
+                pool[depth - 1] = n;
+                poolSize[depth - 1]++;
+            }
+        }
+        return value;
+    }
+    //endregion
+
+    //region Value Index
+    /**
+     * <p>Enables or disables the value index.
+     * While enabled, a hash index from each value to the nodes holding it is maintained,
+     * and {@link SkipList#indexOf(Object)}, {@link SkipList#lastIndexOf(Object)}, {@link SkipList#contains(Object)},
+     * {@link SkipList#remove(Object)} and {@link SkipList#removeLastOccurrence(Object)} run in O(log n)
+     * instead of scanning the list.
+     * Positions are found by climbing the towers through their back-links and summing spans.
+     * The nodes of a value held k times are kept ordered by position, so its first and last occurrences are at hand,
+     * and linking or unlinking one of them costs O(log k log n).</p>
+     * <p>Elements must not be mutated in a way that changes their hashCode while in the list.</p>
+     * @param indexed whether to index values; enabling indexes the current elements in O(n)
+     */
+    public void setValueIndexed(boolean indexed) {
+        if(!indexed) {
+            valueIndex = null;
+        } else if(valueIndex == null) {
+            valueIndex = new HashMap<>();
+            for (Node<E> n = head.nextArr[0]; n != null; n = n.nextArr[0]) {
+                indexAdd(n);
+            }
+        }
+    }
+
+    /**
+     * @return true if values are indexed
+     */
+    public boolean isValueIndexed() {
+        return valueIndex != null;
+    }
+
+    /**
+     * Returns the position of a linked node, summing the spans of the towers passed while climbing back to head.
+     */
+    private int indexOf(Node<E> n) {
+        int index = -1;
+        Node<E> curNode = n;
+        while(curNode != head) {
+            int i = curNode.nextArr.length - 1;
+            curNode = curNode.prevArr[i] == null ? head : curNode.prevArr[i];
+            index += curNode.distArr[i];
+        }
+        return index;
+    }
+
+    private E setValue(Node<E> n, E e) {
+        long weight = weigher == null ? 0 : weigh(e);
+        E value = n.value;
+        if(valueIndex != null) {
+            indexRemove(n);
+            n.value = e;
+            indexAdd(n);
+        } else {
+            n.value = e;
+        }
+        if(weigher != null) {
+            n.weightArr[0] = weight;
+            reweigh(n, null);
+        }
+        return value;
+    }
+
+    /**
+     * @return the first or last node holding the value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E> indexedNode(Object o, boolean last) {
+        Object nodes = valueIndex.get(o);
+        if(nodes == null || nodes instanceof Node) {
+            return (Node<E>) nodes;
+        }
+        TreeSet<Node<E>> set = (TreeSet<Node<E>>) nodes;
+        return last ? set.last() : set.first();
+    }
+
+    /**
+     * Indexes a node once it is linked. Nodes never pass each other, so ordering them by their current positions
+     * stays valid while they are linked.
+     */
+    @SuppressWarnings("unchecked")
+    private void indexAdd(Node<E> n) {
+        valueIndex.merge(n.value, n, (nodes, node) -> {
+            if(nodes instanceof Node) {
+                TreeSet<Node<E>> set = new TreeSet<>(Comparator.comparingInt(x -> indexOf(x)));
+                set.add((Node<E>) nodes);
+                nodes = set;
+            }
+            ((TreeSet<Node<E>>) nodes).add((Node<E>) node);
+            return nodes;
+        });
+    }
+
+    /**
+     * Unindexes a node before it is unlinked, while its position still orders it among the other nodes of its value.
+     */
+    @SuppressWarnings("unchecked")
+    private void indexRemove(Node<E> n) {
+        valueIndex.computeIfPresent(n.value, (value, nodes) -> {
+            if(nodes == n) {
+                return null;
+            }
+            TreeSet<Node<E>> set = (TreeSet<Node<E>>) nodes;
+            set.remove(n);
+            return set.size() == 1 ? set.first() : set;
+        });
+    }
+    //endregion
+
+    //region Weights
+    /**
+     * <p>Enables or disables weighting.
+     * While enabled, every element has a non-negative weight, given by the weigher when it is added or replaced
+     * and changeable with {@link SkipList#setWeight(int, long)}, and each span sums the weights it covers
+     * besides counting its elements.
+     * {@link SkipList#weightBefore(int)} and {@link SkipList#seekByWeight(long)} then translate between indexes
+     * and cumulative weights in O(log n), which makes the list an offset index over variable-length records.</p>
+     * @param weigher the weight of an element, such as its length, or null to disable weighting;
+     *                enabling weighs the current elements and builds the spans in O(n)
+     * @throws IllegalArgumentException if an element weighs less than 0
+     */
+    public void setWeigher(ToLongFunction<? super E> weigher) {
+        beforeWrite();
+        if(weigher == null) {
+            this.weigher = null;
+            head.weightArr = null;
+            for (Node<E> n = head.nextArr[0]; n != null; n = n.nextArr[0]) {
+                n.weightArr = null;
+            }
+            return;
+        }
+        ToLongFunction<? super E> oldWeigher = this.weigher;
+        this.weigher = weigher;
+        try {
+            head.weightArr = new long[MAX_DEPTH];
+            for (Node<E> n = head.nextArr[0]; n != null; n = n.nextArr[0]) {
+                n.weightArr = new long[n.nextArr.length];
+                n.weightArr[0] = weigh(n.value);
+            }
+        } catch (IllegalArgumentException ex) {
+            setWeigher(oldWeigher);
+            throw ex;
+        }
+        //Row i of every tower sums the row i - 1 spans it covers.
+        for (int i = 1; i < MAX_DEPTH; i++) {
+            for (Node<E> n = head; n != null; n = n.nextArr[i]) {
+                fold(n, i);
+            }
+        }
+    }
+
+    /**
+     * @return true if elements are weighted
+     */
+    public boolean isWeighted() {
+        return weigher != null;
+    }
+
+    /**
+     * @return the sum of the weights of every element
+     * @throws IllegalStateException if elements are not weighted
+     */
+    public long totalWeight() {
+        checkWeighted();
+        return weightAfter(head);
+    }
+
+    /**
+     * @param index index of the element
+     * @return the weight of the element at the specified position in this list
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+     * @throws IllegalStateException if elements are not weighted
+     */
+    public long getWeight(int index) {
+        checkWeighted();
+        checkElementIndex(index);
+        return getNode(index).weightArr[0];
+    }
+
+    /**
+     * <p>Replaces the weight of the element at the specified position in this list, until it is next replaced.</p>
+     * @param index index of the element
+     * @param weight the new weight
+     * @return the previous weight of the element
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+     * @throws IllegalArgumentException if the weight is negative
+     * @throws IllegalStateException if elements are not weighted
+     */
+    public long setWeight(int index, long weight) {
+        checkWeighted();
+        checkElementIndex(index);
+        if(weight < 0) {
+            throw new IllegalArgumentException("Weight: " + weight);
+        }
+        beforeWrite();
+        Node<E> n = getNode(index);
+        long oldWeight = n.weightArr[0];
+        n.weightArr[0] = weight;
+        reweigh(n, null);
+        return oldWeight;
+    }
+
+    /**
+     * @param index index of an element, or size() for the total weight
+     * @return the sum of the weights of the elements before the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index > size())
+     * @throws IllegalStateException if elements are not weighted
+     */
+    public long weightBefore(int index) {
+        checkWeighted();
+        if(index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
+        }
+        long weight = 0;
+        Node<E> curNode = head;
+        index++;
+        for(int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null && index - curNode.distArr[i] >= 0) {
+                index -= curNode.distArr[i];
+                weight += curNode.weightArr[i];
+                curNode = curNode.nextArr[i];
+            }
+        }
+        //Past the last element, the rest of its span is the last weight.
+        return index == 0 ? weight : weight + curNode.weightArr[0];
+    }
+
+    /**
+     * <p>Returns the index of the element covering the specified offset,
+     * that is the index i such that weightBefore(i) <= offset < weightBefore(i + 1).
+     * Elements weighing 0 cover no offset.</p>
+     * @param offset a cumulative weight
+     * @return the index of the element covering the offset, or size() if the offset is not less than the total weight
+     * @throws IndexOutOfBoundsException if the offset is negative
+     * @throws IllegalStateException if elements are not weighted
+     */
+    public int seekByWeight(long offset) {
+        checkWeighted();
+        if(offset < 0) {
+            throw new IndexOutOfBoundsException("Offset: " + offset);
+        }
+        if(offset >= weightAfter(head)) {
+            return size;
+        }
+        //Find the last node starting at or before the offset.
+        int index = -1;
+        Node<E> curNode = head;
+        for(int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null && offset - curNode.weightArr[i] >= 0) {
+                offset -= curNode.weightArr[i];
+                index += curNode.distArr[i];
+                curNode = curNode.nextArr[i];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the weight from n, inclusive, to the end, following the top row whose spans are
+     * almost always a single one from head
+     */
+    private long weightAfter(Node<E> n) {
+        long weight = 0;
+        for (; n != null; n = n.nextArr[n.nextArr.length - 1]) {
+            weight += n.weightArr[n.nextArr.length - 1];
+        }
+        return weight;
+    }
+
+    private long weigh(E e) {
+        long weight = weigher.applyAsLong(e);
+        if(weight < 0) {
+            throw new IllegalArgumentException("Weight: " + weight);
+        }
+        return weight;
+    }
+
+    private void checkWeighted() {
+        if(weigher == null) {
+            throw new IllegalStateException("Not weighted");
+        }
+    }
+
+    private void checkElementIndex(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Refolds the weights of every row bottom up from c, the last node at or before the change,
+     * climbing to the tower covering it at each row. added, if not null, was just linked after c
+     * and has its own rows folded first.
+     */
+    private void reweigh(Node<E> c, Node<E> added) {
+        for (int i = 0; i < MAX_DEPTH; i++) {
+            while (c != head && c.nextArr.length <= i) {
+                Node<E> prev = c.prevArr[c.nextArr.length - 1];
+                c = prev == null ? head : prev;
+            }
+            if(added != null && i < added.nextArr.length) {
+                fold(added, i);
+            }
+            fold(c, i);
+        }
+    }
+
+    private void fold(Node<E> n, int i) {
+        if(i == 0) {
+            if(n == head) {
+                head.weightArr[0] = 0;
+            }
+            return;
+        }
+        long weight = n.weightArr[i - 1];
+        Node<E> end = n.nextArr[i];
+        for (Node<E> m = n.nextArr[i - 1]; m != end; m = m.nextArr[i - 1]) {
+            weight += m.weightArr[i - 1];
+        }
+        n.weightArr[i] = weight;
+    }
+    //endregion
+
+    //region Ingest
+    /**
+     * <p>Enables or disables ingest mode.
+     * While enabled, new nodes get towers of at most {@code levels} rows, so that bulk loading with
+     * {@link SkipList#addLast(E)} links and allocates little more than a linked list does.
+     * Every operation stays correct meanwhile, but positional access into the ingested elements
+     * walks row {@code levels - 1} and slows down accordingly.
+     * Disabling raises the capped towers of the elements added since enabling in one pass,
+     * back to the depths they would have had, and rebuilds their spans and weights.
+     * Changing the number of levels while enabled first disables then enables again.</p>
+     * @param levels the maximum depth of new towers, or 0 to disable ingest mode
+     * @throws IllegalArgumentException if levels is negative
+     */
+    public void setIngestLevels(int levels) {
+        if(levels < 0) {
+            throw new IllegalArgumentException("Levels: " + levels);
+        }
+        if(ingestLevels > 0 && ingestLevels < MAX_DEPTH) {
+            beforeWrite();
+            buildIndex(ingestLevels);
+        }
+        ingestLevels = Math.min(levels, MAX_DEPTH);
+        ingestFrom = size;
+    }
+
+    /**
+     * @return the maximum depth of new towers, or 0 unless ingesting
+     */
+    public int getIngestLevels() {
+        return ingestLevels;
+    }
+
+    /**
+     * Raises the towers capped at levels past position ingestFrom, drawing the rows they were denied,
+     * and relinks every row from levels up past that position along the bottom row.
+     */
+    @SuppressWarnings("unchecked")
+    private void buildIndex(int levels) {
+        int from = Math.min(ingestFrom, size);
+        Node<E>[] last = new Node[MAX_DEPTH];
+        int[] lastPos = new int[MAX_DEPTH];
+        Node<E> curNode = head;
+        int pos = 0;
+        for(int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null && pos + curNode.distArr[i] <= from) {
+                pos += curNode.distArr[i];
+                curNode = curNode.nextArr[i];
+            }
+            last[i] = curNode;
+            lastPos[i] = pos;
+        }
+        Node<E>[] first = last.clone();
+        for(Node<E> x = curNode.nextArr[0]; x != null; x = x.nextArr[0]) {
+            pos++;
+            if(x.nextArr.length == levels) {
+                int depth = Math.min(levels - 1 + Node.randomDepth(), MAX_DEPTH);
+                if(depth > levels) {
+                    x.nextArr = Arrays.copyOf(x.nextArr, depth);
+                    x.prevArr = Arrays.copyOf(x.prevArr, depth);
+                    x.distArr = Arrays.copyOf(x.distArr, depth);
+                    if(x.weightArr != null) {
+                        x.weightArr = Arrays.copyOf(x.weightArr, depth);
+                    }
+                }
+            }
+            for(int i = levels; i < x.nextArr.length; i++) {
+                last[i].nextArr[i] = x;
+                x.prevArr[i] = last[i] == head ? null : last[i];
+                last[i].distArr[i] = pos - lastPos[i];
+                last[i] = x;
+                lastPos[i] = pos;
+            }
+        }
+        for(int i = levels; i < MAX_DEPTH; i++) {
+            last[i].nextArr[i] = null;
+            head.prevArr[i] = last[i] == head ? null : last[i];
+            last[i].distArr[i] = size + 1 - lastPos[i];
+        }
+        if(weigher != null) {
+            for(int i = levels; i < MAX_DEPTH; i++) {
+                for(Node<E> n = first[i]; n != null; n = n.nextArr[i]) {
+                    fold(n, i);
+                }
+            }
+        }
+    }
+    //endregion
+
     //Serialize
     @java.io.Serial
     private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
@@ -958,4 +2247,4 @@ public class SkipList<E> extends AbstractSequentialList<E>
         }
         return result;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
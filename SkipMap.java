@@ -18,7 +18,7 @@ public class SkipMap<K,V> extends AbstractMap<K,V> implements NavigableMap<K,V>,
             nextArr = new Entry[depth];
         }
         public Entry(K key, V value) {
-            this(key, value, Integer.numberOfTrailingZeros(RANDOM.nextInt()) + 1);
+            this(key, value, Math.min(Integer.numberOfTrailingZeros(RANDOM.nextInt()) + 1, MAX_DEPTH));
         }
         public int size() {
             return nextArr.length;
@@ -40,7 +40,26 @@ public class SkipMap<K,V> extends AbstractMap<K,V> implements NavigableMap<K,V>,
 
         @Override
         public V setValue(V value) {
-            return null;
+            V oldValue = this.value;
+            this.value = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e
+                    && Objects.equals(key, e.getKey())
+                    && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
         }
     }
 
@@ -50,77 +69,293 @@ public class SkipMap<K,V> extends AbstractMap<K,V> implements NavigableMap<K,V>,
     private static final Random RANDOM = new Random();
 
 
+    //region Get
     @Override
-    public boolean containsKey(Object key) {
-        return super.containsKey(key);
+    public int size() {
+        return size;
     }
 
     @Override
-    public boolean containsValue(Object value) {
-        return super.containsValue(value);
+    public boolean isEmpty() {
+        return size == 0;
     }
 
     @Override
-    public V put(K key, V value) {
-        return null;
+    public boolean containsKey(Object key) {
+        return getEntry(key) != null;
     }
 
     @Override
-    public V remove(Object key) {
-        return null;
-    }
-    private void remove(Entry e){
-        for(int i = 0; i < size(); i++) {
-            (e.prevArr[i] == null ? head : e.prevArr[i]).nextArr[i] = e.nextArr[i];
-            (e.nextArr[i] == null ? head : e.nextArr[i]).prevArr[i] = e.prevArr[i];
-        }
+    public boolean containsValue(Object value) {
+        return super.containsValue(value);
     }
 
     @Override
-    public Set<Map.Entry<K, V>> entrySet() {
+    public V get(Object key) {
+        Entry<K,V> e = getEntry(key);
+        return e == null ? null : e.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    Entry<K,V> getEntry(Object key) {
+        Comparable<? super K> k = (Comparable<? super K>) key;
+        Entry<K,V> curEntry = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curEntry.nextArr[i] != null) {
+                int cmp = k.compareTo(curEntry.nextArr[i].key);
+                if (cmp > 0) {
+                    curEntry = curEntry.nextArr[i];
+                } else if (cmp < 0) {
+                    break;
+                } else {
+                    return curEntry.nextArr[i];
+                }
+            }
+        }
         return null;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public Entry<K, V> lowerEntry(K key) {
-        return null;
+        Comparable<? super K> k = (Comparable<? super K>) key;
+        Entry<K,V> curEntry = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curEntry.nextArr[i] != null) {
+                if (k.compareTo(curEntry.nextArr[i].key) > 0) {
+                    curEntry = curEntry.nextArr[i];
+                } else {
+                    break;
+                }
+            }
+        }
+        return curEntry == head ? null : curEntry;
     }
 
     @Override
     public K lowerKey(K key) {
-        return null;
+        return keyOrNull(lowerEntry(key));
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public Entry<K, V> floorEntry(K key) {
-        return null;
+        Comparable<? super K> k = (Comparable<? super K>) key;
+        Entry<K,V> curEntry = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curEntry.nextArr[i] != null) {
+                int cmp = k.compareTo(curEntry.nextArr[i].key);
+                if (cmp > 0) {
+                    curEntry = curEntry.nextArr[i];
+                } else if(cmp < 0) {
+                    break;
+                } else {
+                    return curEntry.nextArr[i];
+                }
+            }
+        }
+        return curEntry == head ? null : curEntry;
     }
 
     @Override
     public K floorKey(K key) {
-        return null;
+        return keyOrNull(floorEntry(key));
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public Entry<K, V> ceilingEntry(K key) {
-        return null;
+        Comparable<? super K> k = (Comparable<? super K>) key;
+        Entry<K,V> curEntry = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curEntry.prevArr[i] != null) {
+                int cmp = k.compareTo(curEntry.prevArr[i].key);
+                if (cmp < 0) {
+                    curEntry = curEntry.prevArr[i];
+                } else if (cmp > 0){
+                    break;
+                } else {
+                    return curEntry.prevArr[i];
+                }
+            }
+        }
+        return curEntry == head ? null : curEntry;
     }
 
     @Override
     public K ceilingKey(K key) {
-        return null;
+        return keyOrNull(ceilingEntry(key));
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public Entry<K, V> higherEntry(K key) {
-        return null;
+        Comparable<? super K> k = (Comparable<? super K>) key;
+        Entry<K,V> curEntry = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curEntry.prevArr[i] != null) {
+                if (k.compareTo(curEntry.prevArr[i].key) < 0) {
+                    curEntry = curEntry.prevArr[i];
+                } else {
+                    break;
+                }
+            }
+        }
+        return curEntry == head ? null : curEntry;
     }
 
     @Override
     public K higherKey(K key) {
+        return keyOrNull(higherEntry(key));
+    }
+
+    private static <K> K keyOrNull(Entry<K,?> e) {
+        return e == null ? null : e.key;
+    }
+    //endregion
+
+    //region Put
+    @Override
+    public V put(K key, V value) {
+        Entry<K,V> e = getEntry(key);
+        if(e != null) {
+            return e.setValue(value);
+        }
+        link(newEntry(key, value));
         return null;
     }
 
+    /**
+     * Links a new entry into every row of its tower, its key being absent from the map.
+     */
+    @SuppressWarnings("unchecked")
+    void link(Entry<K,V> n) {
+        Comparable<? super K> k = (Comparable<? super K>) n.key;
+        Entry<K,V> curEntry = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curEntry.nextArr[i] != null && k.compareTo(curEntry.nextArr[i].key) > 0) {
+                curEntry = curEntry.nextArr[i];
+            }
+            if(i < n.size()) {
+                (curEntry.nextArr[i] == null ? head : curEntry.nextArr[i]).prevArr[i] = n;
+                n.nextArr[i] = curEntry.nextArr[i];
+                if(curEntry != head) {
+                    n.prevArr[i] = curEntry;
+                }
+                curEntry.nextArr[i] = n;
+            }
+        }
+        size++;
+    }
+
+    Entry<K,V> newEntry(K key, V value) {
+        return new Entry<>(key, value);
+    }
+
+    /**
+     * Links an entry after the last one without searching. key must be greater than every key.
+     */
+    void append(K key, V value) {
+        Entry<K,V> n = newEntry(key, value);
+        for (int i = 0; i < n.size(); i++) {
+            Entry<K,V> last = head.prevArr[i];
+            (last == null ? head : last).nextArr[i] = n;
+            n.prevArr[i] = last;
+            head.prevArr[i] = n;
+        }
+        size++;
+    }
+    //endregion
+
+    //region Remove
+    @Override
+    public V remove(Object key) {
+        Entry<K,V> e = getEntry(key);
+        if(e == null) {
+            return null;
+        }
+        remove(e);
+        size--;
+        return e.value;
+    }
+
+    void remove(Entry<K,V> e){
+        for(int i = 0; i < e.size(); i++) {
+            (e.prevArr[i] == null ? head : e.prevArr[i]).nextArr[i] = e.nextArr[i];
+            (e.nextArr[i] == null ? head : e.nextArr[i]).prevArr[i] = e.prevArr[i];
+        }
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        head.clear();
+    }
+    //endregion
+
+    //region Iterate
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new Iterator<>() {
+                    Entry<K,V> curEntry = head.nextArr[0];
+                    Entry<K,V> lastEntry;
+                    @Override
+                    public boolean hasNext() {
+                        return curEntry != null;
+                    }
+
+                    @Override
+                    public Map.Entry<K, V> next() {
+                        if(curEntry == null) {
+                            throw new NoSuchElementException();
+                        }
+                        lastEntry = curEntry;
+                        curEntry = curEntry.nextArr[0];
+                        return lastEntry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if(lastEntry == null) {
+                            throw new IllegalStateException();
+                        }
+                        SkipMap.this.remove(lastEntry);
+                        size--;
+                        lastEntry = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                SkipMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Copies the map into an immutable map laid out for searching, in O(n).
+     */
+    public FrozenSkipMap<K,V> freeze() {
+        Object[] keys = new Object[size];
+        Object[] values = new Object[size];
+        int i = 0;
+        for (Entry<K,V> e = head.nextArr[0]; e != null; e = e.nextArr[0], i++) {
+            keys[i] = e.key;
+            values[i] = e.value;
+        }
+        return new FrozenSkipMap<>(new FrozenSkipSet<>(keys), values);
+    }
+    //endregion
+
     @Override
     public Entry<K, V> firstEntry() {
         return head.nextArr[0];
@@ -133,12 +368,22 @@ public class SkipMap<K,V> extends AbstractMap<K,V> implements NavigableMap<K,V>,
 
     @Override
     public Entry<K, V> pollFirstEntry() {
-        return null;
+        Entry<K,V> e = head.nextArr[0];
+        if(e != null) {
+            remove(e);
+            size--;
+        }
+        return e;
     }
 
     @Override
     public Entry<K, V> pollLastEntry() {
-        return null;
+        Entry<K,V> e = head.prevArr[0];
+        if(e != null) {
+            remove(e);
+            size--;
+        }
+        return e;
     }
 
     @Override
@@ -193,11 +438,17 @@ public class SkipMap<K,V> extends AbstractMap<K,V> implements NavigableMap<K,V>,
 
     @Override
     public K firstKey() {
-        return null;
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return head.nextArr[0].key;
     }
 
     @Override
     public K lastKey() {
-        return null;
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return head.prevArr[0].key;
     }
 }
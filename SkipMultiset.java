@@ -0,0 +1,350 @@
+package util;
+
+import java.util.*;
+/*Bi-directional "Tower-Based" SkipMultiset
+ * Node<F> { F val; int count; Node<F>[] nexts; Node<F>[] prevs; int[] dists; }
+ * dists[i] is the number of occurrences after the node, up to and including the next node of row i,
+ * or up to the end of the multiset for the last node of the row.
+ */
+
+public class SkipMultiset<E> extends AbstractCollection<E> implements Cloneable, java.io.Serializable {
+    static class Node<F> {
+        F value;
+        int count;
+        Node<F>[] nextArr;
+        Node<F>[] prevArr;
+        int[] distArr;
+
+        @SuppressWarnings("unchecked")
+        Node(F value, int depth) {
+            this.value = value;
+            prevArr = new Node[depth];
+            nextArr = new Node[depth];
+            distArr = new int[depth];
+        }
+
+        Node(F value) {
+            this(value, Math.min(Integer.numberOfTrailingZeros(RANDOM.nextInt()) + 1, MAX_DEPTH));
+        }
+    }
+
+    private transient Node<E> head = new Node<>(null, MAX_DEPTH);
+    private transient int size;
+    private transient int distinct;
+    //Predecessor of the searched key and the occurrences up to and including it, by row.
+    @SuppressWarnings("unchecked")
+    private transient Node<E>[] path = new Node[MAX_DEPTH];
+    private transient int[] rankPath = new int[MAX_DEPTH];
+
+    private static final int MAX_DEPTH = 32;
+    private static final Random RANDOM = new Random();
+
+    public SkipMultiset() {
+    }
+
+    public SkipMultiset(Collection<? extends E> c) {
+        addAll(c);
+    }
+
+    //region Get
+    /**
+     * @return the total number of occurrences
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of distinct elements
+     */
+    public int distinctSize() {
+        return distinct;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return count(o) > 0;
+    }
+
+    /**
+     * @param o the element to count
+     * @return the number of occurrences of the element
+     */
+    public int count(Object o) {
+        Node<E> n = search(o);
+        return n == null ? 0 : n.count;
+    }
+
+    /**
+     * @param o the element to rank
+     * @return the number of occurrences strictly less than the element
+     */
+    public int rank(Object o) {
+        search(o);
+        return rankPath[0];
+    }
+
+    /**
+     * @param index the position in sorted order, counting every occurrence
+     * @return the element at that position
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0 || index >= size())
+     */
+    public E get(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: "+ index + ", Size: " + size);
+        }
+        Node<E> curNode = head;
+        int rank = 0;
+        for(int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null && rank + curNode.distArr[i] <= index) {
+                rank += curNode.distArr[i];
+                curNode = curNode.nextArr[i];
+            }
+        }
+        return curNode.nextArr[0].value;
+    }
+
+    /**
+     * Returns the nearest-rank quantile, the element at position ceil(q * size()) - 1 in sorted order.
+     * @param q the quantile, between 0 and 1
+     * @return the element at that quantile
+     * @throws NoSuchElementException if the multiset is empty
+     * @throws IllegalArgumentException if q is not between 0 and 1
+     */
+    public E quantile(double q) {
+        if(!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("Quantile: " + q);
+        }
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return get(Math.max((int) Math.ceil(q * size) - 1, 0));
+    }
+
+    public E first() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return head.nextArr[0].value;
+    }
+
+    public E last() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return head.prevArr[0].value;
+    }
+
+    /**
+     * Descends to the key, filling path and rankPath for every row, and returns its node if present.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E> search(Object o) {
+        Comparable<? super E> k = (Comparable<? super E>) o;
+        Node<E> curNode = head;
+        int rank = 0;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null) {
+                int cmp = k.compareTo(curNode.nextArr[i].value);
+                if (cmp > 0) {
+                    rank += curNode.distArr[i];
+                    curNode = curNode.nextArr[i];
+                } else if (cmp < 0) {
+                    break;
+                } else {
+                    //Found at its top row, the predecessors below are its own back-links.
+                    Node<E> n = curNode.nextArr[i];
+                    rankPath[0] = rank + curNode.distArr[i] - n.count;
+                    for (; i >= 0; i--) {
+                        path[i] = n.prevArr[i] == null ? head : n.prevArr[i];
+                    }
+                    return n;
+                }
+            }
+            path[i] = curNode;
+            rankPath[i] = rank;
+        }
+        return null;
+    }
+    //endregion
+
+    //region Add
+    /**
+     * Adds one occurrence of the element.
+     * @return true
+     */
+    @Override
+    public boolean add(E e) {
+        Node<E> n = search(e);
+        if(n != null) {
+            n.count++;
+            for(int i = 0; i < MAX_DEPTH; i++) {
+                path[i].distArr[i]++;
+            }
+        } else {
+            n = new Node<>(e);
+            n.count = 1;
+            int i = MAX_DEPTH - 1;
+            //Rows[depth >= n.length]
+            for(; i >= n.distArr.length; i--) {
+                path[i].distArr[i]++;
+            }
+            //Rows[depth < n.length]
+            for(; i >= 0; i--) {
+                Node<E> prev = path[i];
+                int offset = rankPath[0] + 1 - rankPath[i];
+                n.distArr[i] = prev.distArr[i] + 1 - offset;
+                prev.distArr[i] = offset;
+                (prev.nextArr[i] == null ? head : prev.nextArr[i]).prevArr[i] = n;
+                n.nextArr[i] = prev.nextArr[i];
+                if(prev != head) {
+                    n.prevArr[i] = prev;
+                }
+                prev.nextArr[i] = n;
+            }
+            distinct++;
+        }
+        size++;
+        return true;
+    }
+    //endregion
+
+    //region Remove
+    /**
+     * Removes one occurrence of the element, if present.
+     * @return true if an occurrence was removed
+     */
+    @Override
+    public boolean remove(Object o) {
+        Node<E> n = search(o);
+        if(n == null) {
+            return false;
+        }
+        if(--n.count > 0) {
+            for(int i = 0; i < MAX_DEPTH; i++) {
+                path[i].distArr[i]--;
+            }
+        } else {
+            int i = MAX_DEPTH - 1;
+            //Rows[depth >= n.length]
+            for(; i >= n.distArr.length; i--) {
+                path[i].distArr[i]--;
+            }
+            //Rows[depth < n.length]
+            for(; i >= 0; i--) {
+                Node<E> prev = n.prevArr[i] == null ? head : n.prevArr[i];
+                prev.nextArr[i] = n.nextArr[i];
+                prev.distArr[i] += n.distArr[i] - 1;
+                (n.nextArr[i] == null ? head : n.nextArr[i]).prevArr[i] = n.prevArr[i];
+            }
+            distinct--;
+        }
+        size--;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        distinct = 0;
+        Arrays.fill(head.distArr, 0);
+        Arrays.fill(head.nextArr, null);
+        Arrays.fill(head.prevArr, null);
+    }
+    //endregion
+
+    //region Iterate
+    /**
+     * @return an iterator over every occurrence in sorted order
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            Node<E> curNode = head.nextArr[0];
+            int remaining = curNode == null ? 0 : curNode.count;
+            Node<E> lastNode;
+            @Override
+            public boolean hasNext() {
+                return curNode != null;
+            }
+
+            @Override
+            public E next() {
+                if(curNode == null) {
+                    throw new NoSuchElementException();
+                }
+                lastNode = curNode;
+                if(--remaining == 0) {
+                    curNode = curNode.nextArr[0];
+                    remaining = curNode == null ? 0 : curNode.count;
+                }
+                return lastNode.value;
+            }
+
+            /**
+             * Removes one occurrence of the last element returned, unlinking its node at zero as remove(Object) does.
+             * The occurrences of the node still to be returned are counted by remaining, so they are unaffected.
+             */
+            @Override
+            public void remove() {
+                if(lastNode == null) {
+                    throw new IllegalStateException();
+                }
+                SkipMultiset.this.remove(lastNode.value);
+                lastNode = null;
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SkipMultiset<E> clone() {
+        try {
+            SkipMultiset<E> clone = (SkipMultiset<E>) super.clone();
+            clone.head = new Node<>(null, MAX_DEPTH);
+            clone.path = new Node[MAX_DEPTH];
+            clone.rankPath = new int[MAX_DEPTH];
+            clone.size = 0;
+            clone.distinct = 0;
+            for (E e : this) {
+                clone.add(e);
+            }
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    @java.io.Serial
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(distinct);
+        for (Node<E> n = head.nextArr[0]; n != null; n = n.nextArr[0]) {
+            s.writeObject(n.value);
+            s.writeInt(n.count);
+        }
+    }
+
+    @java.io.Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        head = new Node<>(null, MAX_DEPTH);
+        path = new Node[MAX_DEPTH];
+        rankPath = new int[MAX_DEPTH];
+        int distinct = s.readInt();
+        for (int i = 0; i < distinct; i++) {
+            E value = (E) s.readObject();
+            for (int count = s.readInt(); count > 0; count--) {
+                add(value);
+            }
+        }
+    }
+    //endregion
+}
@@ -1,6 +1,7 @@
 package util;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 /*Bi-directional "Tower-Based" SkipSet
  * Node<F> { F val; Node<F>[] nexts; Node<F>[] prevs; }
  */
@@ -17,7 +18,7 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
             nextArr = new Node[depth];
         }
         public Node(F value) {
-            this(value, Integer.numberOfTrailingZeros(RANDOM.nextInt()) + 1);
+            this(value, newDepth());
         }
         public int size() {
             return nextArr.length;
@@ -29,6 +30,15 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
     }
     Node<E> head = new Node<>(null, MAX_DEPTH);
     int size;
+    //True while lazy clones share the nodes, which are then copied before the next write.
+    transient boolean shared;
+    //First element not yet reallocated by an unfinished incremental compaction, null if none is under way.
+    private transient E compactCursor;
+    //Rows new nodes are capped at, 0 unless ingesting, and the last element when ingesting began.
+    private transient int ingestLevels;
+    private transient E ingestFrom;
+    //Predecessors of the element being added, by row, allocated by the first add.
+    private transient Node<E>[] path;
     private static final int MAX_DEPTH = 32;
     private static final Random RANDOM = new Random();
 
@@ -63,7 +73,7 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
     }
 
     @SuppressWarnings("unchecked")
-    private Node<E> getNode(Object o) {
+    Node<E> getNode(Object o) {
         Comparable<? super E> k = (Comparable<? super E>) o;
         Node<E> curNode = head;
         for (int i = MAX_DEPTH - 1; i >= 0; i--) {
@@ -155,53 +165,182 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
         return curNode.value;
     }
 
+    /**
+     * Predecessors, by row, of the last key sought. A seek climbs from them only as high as the distance to
+     * the new key requires, so m ascending seeks among n elements cost O(m log(n/m)) instead of O(m log n).
+     * Removing nodes at or after the last key sought leaves a finger valid.
+     */
+    final class Finger {
+        @SuppressWarnings("unchecked")
+        private final Node<E>[] pred = new Node[MAX_DEPTH];
+
+        Finger() {
+            Arrays.fill(pred, head);
+        }
+
+        /**
+         * Returns the first node not less than o, which must not be less than the previous key sought.
+         */
+        @SuppressWarnings("unchecked")
+        Node<E> seek(Object o) {
+            Comparable<? super E> k = (Comparable<? super E>) o;
+            //Rows from top up still end before k, as a taller node in between would also be in row top.
+            int top = 0;
+            while (top < MAX_DEPTH && pred[top].nextArr[top] != null && k.compareTo(pred[top].nextArr[top].value) > 0) {
+                top++;
+            }
+            Node<E> curNode = null;
+            boolean moved = false;
+            for (int i = top - 1; i >= 0; i--) {
+                if(!moved) {
+                    curNode = pred[i];
+                }
+                while (curNode.nextArr[i] != null && k.compareTo(curNode.nextArr[i].value) > 0) {
+                    curNode = curNode.nextArr[i];
+                    moved = true;
+                }
+                pred[i] = curNode;
+            }
+            return pred[0].nextArr[0];
+        }
+
+        /**
+         * Returns the node equal to o, if present, seeking as {@link #seek(Object)} does.
+         */
+        @SuppressWarnings("unchecked")
+        Node<E> match(Object o) {
+            Node<E> n = seek(o);
+            return n != null && ((Comparable<? super E>) o).compareTo(n.value) == 0 ? n : null;
+        }
+    }
+
     //endregion
 
     //region Add
     @Override
     @SuppressWarnings("unchecked")
     public boolean add(E e) {
-        if(!contains(e)) {
-            Node<E> n = new Node<>(e);
-            Comparable<? super E> k = (Comparable<? super E>) e;
-            Node<E> curNode = head;
-            int i = MAX_DEPTH - 1;
-            for (; i >= n.size(); i--) {
-                while (curNode.nextArr[i] != null) {
-                    int cmp = k.compareTo(curNode.nextArr[i].value);
-                    if (cmp > 0) {
-                        curNode = curNode.nextArr[i];
-                    } else {
-                        break;
-                    }
-                }
+        Comparable<? super E> k = (Comparable<? super E>) e;
+        if(ingestLevels > 0 && size > 0 && k.compareTo(head.prevArr[0].value) > 0) {
+            //Loads in ascending order skip the descent.
+            append(e);
+            return true;
+        }
+        //A duplicate neither copies towers shared with lazy clones nor allocates a node.
+        if(!findPath(k)) {
+            return false;
+        }
+        if(shared) {
+            //The path runs through shared nodes, which the copy replaces.
+            beforeWrite();
+            findPath(k);
+        }
+        link(newNode(e), path);
+        size++;
+        return true;
+    }
+
+    /**
+     * In place union. Into a plain SkipSet, the other set is walked while a finger over this one finds the
+     * predecessors each missing element links after, costing O(m log(n/m)). Subclasses, whose add() does
+     * more than link, add element by element in O(m log n).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean addAll(Collection<? extends E> c) {
+        if(!(c instanceof SkipSet<?> other) || getClass() != SkipSet.class) {
+            return super.addAll(c);
+        }
+        boolean changed = false;
+        Finger finger = new Finger();
+        for (SkipSet<?>.Node<?> n = other.head.nextArr[0]; n != null; n = n.nextArr[0]) {
+            if(finger.match(n.value) != null) {
+                continue;
             }
-            for (; i >= 0; i--) {
-                while (curNode.nextArr[i] != null) {
-                    int cmp = k.compareTo(curNode.nextArr[i].value);
-                    if (cmp > 0) {
-                        curNode = curNode.nextArr[i];
-                    } else {
-                        break;
-                    }
-                }
-                (curNode.nextArr[i] == null ? head : curNode.nextArr[i]).prevArr[i] = n;
-                n.nextArr[i] = curNode.nextArr[i];
-                if(curNode != head) {
-                    n.prevArr[i] = curNode;
-                }
-                curNode.nextArr[i] = n;
+            if(shared) {
+                //The finger runs through shared nodes, which the copy replaces.
+                beforeWrite();
+                finger = new Finger();
+                finger.seek(n.value);
             }
+            link(newNode((E) n.value), finger.pred);
             size++;
-            return true;
+            changed = true;
         }
-        return false;
+        return changed;
+    }
+
+    /**
+     * Links n after the predecessors of its key by row.
+     */
+    private void link(Node<E> n, Node<E>[] pred) {
+        for (int i = 0; i < n.size(); i++) {
+            Node<E> curNode = pred[i];
+            (curNode.nextArr[i] == null ? head : curNode.nextArr[i]).prevArr[i] = n;
+            n.nextArr[i] = curNode.nextArr[i];
+            n.prevArr[i] = curNode == head ? null : curNode;
+            curNode.nextArr[i] = n;
+        }
+    }
+
+    /**
+     * Fills path with the predecessors of k by row.
+     * @return false if k is already present
+     */
+    @SuppressWarnings("unchecked")
+    private boolean findPath(Comparable<? super E> k) {
+        if(path == null) {
+            path = new Node[MAX_DEPTH];
+        }
+        Node<E> curNode = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curNode.nextArr[i] != null) {
+                int cmp = k.compareTo(curNode.nextArr[i].value);
+                if (cmp > 0) {
+                    curNode = curNode.nextArr[i];
+                } else if (cmp < 0) {
+                    break;
+                } else {
+                    return false;
+                }
+            }
+            path[i] = curNode;
+        }
+        return true;
+    }
+
+    Node<E> newNode(E e) {
+        return new Node<>(e);
+    }
+
+    /**
+     * @return a random depth, at most the ingest levels while ingesting
+     */
+    int newDepth() {
+        int depth = Math.min(Integer.numberOfTrailingZeros(RANDOM.nextInt()) + 1, MAX_DEPTH);
+        return ingestLevels > 0 && depth > ingestLevels ? ingestLevels : depth;
+    }
+
+    /**
+     * Links e after the last element without searching. e must be greater than every element.
+     */
+    void append(E e) {
+        beforeWrite();
+        Node<E> n = newNode(e);
+        for (int i = 0; i < n.size(); i++) {
+            Node<E> last = head.prevArr[i];
+            (last == null ? head : last).nextArr[i] = n;
+            n.prevArr[i] = last;
+            head.prevArr[i] = n;
+        }
+        size++;
     }
     //endregion
 
     //region Remove
     @Override
     public E pollFirst() {
+        beforeWrite();
         Node<E> n = head.nextArr[0];
         if(n == null) {
             return null;
@@ -214,6 +353,7 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
 
     @Override
     public E pollLast() {
+        beforeWrite();
         Node<E> n = head.prevArr[0];
         if(n == null) {
             return null;
@@ -228,6 +368,10 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
     public boolean remove(Object o) {
         Node<E> n = getNode(o);
         if (n != null) {
+            if(shared) {
+                beforeWrite();
+                n = getNode(o);
+            }
             remove(n);
             size--;
             return true;
@@ -238,15 +382,139 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
     @Override
     public void clear() {
         size = 0;
+        ingestFrom = null;
+        if(shared) {
+            //Leave the shared nodes to the lazy clones.
+            shared = false;
+            head = new Node<>(null, MAX_DEPTH);
+        }
         head.clear();
     }
 
+    //Callers find n after beforeWrite(), since nodes found before it may belong to lazy clones.
     public void remove(Node<E> n){
-        for(int i = 0; i < size(); i++) {
+        for(int i = 0; i < n.size(); i++) {
             (n.prevArr[i] == null ? head : n.prevArr[i]).nextArr[i] = n.nextArr[i];
             (n.nextArr[i] == null ? head : n.nextArr[i]).prevArr[i] = n.prevArr[i];
         }
     }
+
+    /**
+     * In place difference. Against another SkipSet, the smaller set is walked while a finger gallops through
+     * the larger one.
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if(!(c instanceof SkipSet<?> other)) {
+            return super.removeAll(c);
+        }
+        List<Node<E>> removed = new ArrayList<>();
+        if(other.size() <= size) {
+            Finger finger = new Finger();
+            for (SkipSet<?>.Node<?> n = other.head.nextArr[0]; n != null; n = n.nextArr[0]) {
+                Node<E> match = finger.match(n.value);
+                if(match != null) {
+                    removed.add(match);
+                }
+            }
+        } else {
+            SkipSet<?>.Finger finger = other.new Finger();
+            for (Node<E> n = head.nextArr[0]; n != null; n = n.nextArr[0]) {
+                if(finger.match(n.value) != null) {
+                    removed.add(n);
+                }
+            }
+        }
+        //Unlinking may rebalance towers, so it waits until the fingers are done.
+        return unlinkAll(removed);
+    }
+
+    /**
+     * In place intersection. Against another SkipSet, this set is walked while a finger gallops through the other.
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        if(!(c instanceof SkipSet<?> other)) {
+            return super.retainAll(c);
+        }
+        List<Node<E>> removed = new ArrayList<>();
+        SkipSet<?>.Finger finger = other.new Finger();
+        for (Node<E> n = head.nextArr[0]; n != null; n = n.nextArr[0]) {
+            if(finger.match(n.value) == null) {
+                removed.add(n);
+            }
+        }
+        return unlinkAll(removed);
+    }
+
+    /**
+     * In place symmetric difference: removes the elements of other present in this set and adds the others.
+     * other is walked while a finger gallops through this set, costing O(m log(n/m)) for a plain SkipSet.
+     * Subclasses unlink the present elements as removeAll does, then add the missing ones one by one.
+     * @return whether this set changed
+     */
+    @SuppressWarnings("unchecked")
+    public boolean symmetricDifferenceInPlace(SkipSet<? extends E> other) {
+        if(other == this) {
+            boolean changed = size > 0;
+            clear();
+            return changed;
+        }
+        if(getClass() != SkipSet.class) {
+            List<Node<E>> removed = new ArrayList<>();
+            List<E> added = new ArrayList<>();
+            Finger finger = new Finger();
+            for (SkipSet<?>.Node<?> n = other.head.nextArr[0]; n != null; n = n.nextArr[0]) {
+                Node<E> match = finger.match(n.value);
+                if(match != null) {
+                    removed.add(match);
+                } else {
+                    added.add((E) n.value);
+                }
+            }
+            unlinkAll(removed);
+            added.forEach(this::add);
+            return !removed.isEmpty() || !added.isEmpty();
+        }
+        //Every element of other changes this set, so the towers are copied up front.
+        if(other.size() > 0) {
+            beforeWrite();
+        }
+        Finger finger = new Finger();
+        for (SkipSet<?>.Node<?> n = other.head.nextArr[0]; n != null; n = n.nextArr[0]) {
+            //Unlinking the match, at the key sought, leaves the finger valid.
+            Node<E> match = finger.match(n.value);
+            if(match != null) {
+                remove(match);
+                size--;
+            } else {
+                link(newNode((E) n.value), finger.pred);
+                size++;
+            }
+        }
+        return other.size() > 0;
+    }
+
+    /**
+     * Unlinks nodes found in ascending order, finding their copies first if lazy clones share them,
+     * so that a call removing nothing copies nothing.
+     * @return whether any node was unlinked
+     */
+    private boolean unlinkAll(List<Node<E>> nodes) {
+        if(nodes.isEmpty()) {
+            return false;
+        }
+        if(shared) {
+            beforeWrite();
+            Finger finger = new Finger();
+            nodes.replaceAll(n -> finger.match(n.value));
+        }
+        for (Node<E> n : nodes) {
+            remove(n);
+            size--;
+        }
+        return true;
+    }
     //endregion
 
     //TODO SplitIterator, Clones, etc
@@ -255,6 +523,8 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
     public Iterator<E> iterator() {
         return new Iterator<>() {
             Node<E> curNode = head.nextArr[0];
+            Node<E> lastNode;
+            Node<E> root = head;
             @Override
             public boolean hasNext() {
                 return curNode != null;
@@ -262,9 +532,29 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
 
             @Override
             public E next() {
-                E value = curNode.value;
+                if(curNode == null) {
+                    throw new NoSuchElementException();
+                }
+                lastNode = curNode;
                 curNode = curNode.nextArr[0];
-                return value;
+                return lastNode.value;
+            }
+
+            @Override
+            public void remove() {
+                if(lastNode == null) {
+                    throw new IllegalStateException();
+                }
+                beforeWrite();
+                if(root != head) {
+                    //Move onto the towers copied after a lazy clone.
+                    root = head;
+                    lastNode = getNode(lastNode.value);
+                    curNode = lastNode.nextArr[0];
+                }
+                SkipSet.this.remove(lastNode);
+                size--;
+                lastNode = null;
             }
         };
     }
@@ -276,6 +566,18 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
     //endregion
 
     //region Clone
+    /**
+     * Copies the set into an immutable set laid out for searching, in O(n).
+     */
+    public FrozenSkipSet<E> freeze() {
+        Object[] sorted = new Object[size];
+        int i = 0;
+        for (Node<E> n = head.nextArr[0]; n != null; n = n.nextArr[0]) {
+            sorted[i++] = n.value;
+        }
+        return new FrozenSkipSet<>(sorted);
+    }
+
     @Override
     public Comparator<? super E> comparator() {
         return null;
@@ -316,9 +618,78 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
         return null;
     }
 
+    /**
+     * Copies the set in O(n), keeping the height of every tower.
+     */
     @Override
-    protected Object clone() throws CloneNotSupportedException {
-        return super.clone();
+    @SuppressWarnings("unchecked")
+    public SkipSet<E> clone() {
+        try {
+            SkipSet<E> clone = (SkipSet<E>) super.clone();
+            clone.head = clone.copyTowers(false);
+            clone.shared = false;
+            clone.path = null;
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Returns an unmodifiable clone of this set in O(1), deferring the copy to the next write. The clone shares
+     * the nodes of this set, and the first write to this set after the call copies all of the towers in O(n)
+     * for this set to continue on. This is not copy-on-write per node: lazy clones taken between the same two
+     * writes share one O(n) copy, however little the write changes.
+     */
+    public NavigableSet<E> lazyClone() {
+        SkipSet<E> view = new SkipSet<>();
+        view.head = head;
+        view.size = size;
+        shared = true;
+        return Collections.unmodifiableNavigableSet(view);
+    }
+
+    /**
+     * Copies the nodes shared with lazy clones before a write.
+     */
+    void beforeWrite() {
+        if(shared) {
+            shared = false;
+            head = copyTowers(false);
+        }
+    }
+
+    /**
+     * Copies the towers of head in one pass along the bottom row, linking each copy after the last copy reaching its rows.
+     * @param rebalance whether to give the copy of the node of rank r, from 1, one row more than r has trailing zeros,
+     *                  instead of the depth of the node copied
+     * @return the head of the copy, whose nodes belong to this set
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E> copyTowers(boolean rebalance) {
+        Node<E> copy = new Node<>(null, MAX_DEPTH);
+        Node<E>[] last = new Node[MAX_DEPTH];
+        Arrays.fill(last, copy);
+        int rank = 0;
+        for (Node<E> x = head.nextArr[0]; x != null; x = x.nextArr[0]) {
+            Node<E> n = copyNode(x, rebalance ? Math.min(Integer.numberOfTrailingZeros(++rank) + 1, MAX_DEPTH) : x.size());
+            for (int i = 0; i < n.size(); i++) {
+                last[i].nextArr[i] = n;
+                n.prevArr[i] = last[i] == copy ? null : last[i];
+                last[i] = n;
+            }
+        }
+        for (int i = 0; i < MAX_DEPTH; i++) {
+            copy.prevArr[i] = last[i] == copy ? null : last[i];
+        }
+        return copy;
+    }
+
+    /**
+     * @return an unlinked node of the same value as n
+     */
+    Node<E> copyNode(Node<E> n, int depth) {
+        return new Node<>(n.value, depth);
     }
 
     @java.io.Serial
@@ -329,4 +700,124 @@ public class SkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Clone
     private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
     }
     //endregion
+
+    //region Compact
+    /**
+     * Reallocates every node in key order, in O(n), so that a scan walks nodes allocated together instead of
+     * nodes scattered by a history of inserts and removes.
+     * @param rebalance whether to rebuild the towers at depths by rank instead of keeping their random depths:
+     *                  every second node then reaches row 1, every fourth row 2, and so on, and no row above
+     *                  log2(n) is left in use
+     */
+    public void compact(boolean rebalance) {
+        shared = false;
+        head = copyTowers(rebalance);
+        compactCursor = null;
+    }
+
+    /**
+     * Reallocates nodes in key order, keeping their depths, until every node has been or the time is up,
+     * checking the time every 64 nodes. The next call resumes with the first element not yet reallocated.
+     * Writes in between are allowed.
+     * @return true if the compaction is complete, false if time ran out
+     */
+    public boolean compact(long timeout, TimeUnit unit) {
+        if(shared) {
+            //Copying the shared towers reallocates every node.
+            beforeWrite();
+            compactCursor = null;
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Node<E> x = compactCursor == null ? head.nextArr[0] : new Finger().seek(compactCursor);
+        //A new head sends iterators back through getNode() before they remove.
+        Node<E> h = new Node<>(null, MAX_DEPTH);
+        System.arraycopy(head.nextArr, 0, h.nextArr, 0, MAX_DEPTH);
+        System.arraycopy(head.prevArr, 0, h.prevArr, 0, MAX_DEPTH);
+        head = h;
+        for (int count = 1; x != null; count++) {
+            if((count & 63) == 0 && System.nanoTime() - deadline > 0) {
+                compactCursor = x.value;
+                return false;
+            }
+            Node<E> next = x.nextArr[0];
+            Node<E> n = copyNode(x, x.size());
+            //x keeps its links, so an iterator standing on it walks on.
+            for (int i = 0; i < n.size(); i++) {
+                n.prevArr[i] = x.prevArr[i];
+                n.nextArr[i] = x.nextArr[i];
+                (n.prevArr[i] == null ? head : n.prevArr[i]).nextArr[i] = n;
+                (n.nextArr[i] == null ? head : n.nextArr[i]).prevArr[i] = n;
+            }
+            x = next;
+        }
+        compactCursor = null;
+        return true;
+    }
+    //endregion
+
+    //region Ingest
+    /**
+     * Enables or disables ingest mode. While enabled, new nodes get towers of at most levels rows, and elements
+     * greater than the last are appended without a descent, so loading in ascending order costs little more than
+     * appending to a linked list. Searches into the elements added meanwhile walk row levels - 1.
+     * Disabling raises their capped towers to the depths they would have had, in one pass over them.
+     * Changing the number of levels while enabled first disables then enables again.
+     * @param levels the maximum depth of new towers, or 0 to disable ingest mode
+     * @throws IllegalArgumentException if levels is negative
+     */
+    public void setIngestLevels(int levels) {
+        if(levels < 0) {
+            throw new IllegalArgumentException("Levels: " + levels);
+        }
+        if(ingestLevels > 0 && ingestLevels < MAX_DEPTH) {
+            beforeWrite();
+            buildIndex(ingestLevels);
+        }
+        ingestLevels = Math.min(levels, MAX_DEPTH);
+        ingestFrom = size == 0 ? null : head.prevArr[0].value;
+    }
+
+    /**
+     * @return the maximum depth of new towers, or 0 unless ingesting
+     */
+    public int getIngestLevels() {
+        return ingestLevels;
+    }
+
+    /**
+     * Raises the towers capped at levels after ingestFrom, drawing the rows they were denied,
+     * and relinks every row from levels up after it along the bottom row.
+     */
+    @SuppressWarnings("unchecked")
+    private void buildIndex(int levels) {
+        Node<E>[] last = new Node[MAX_DEPTH];
+        Node<E> curNode = head;
+        Comparable<? super E> k = (Comparable<? super E>) ingestFrom;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (k != null && curNode.nextArr[i] != null && k.compareTo(curNode.nextArr[i].value) >= 0) {
+                curNode = curNode.nextArr[i];
+            }
+            last[i] = curNode;
+        }
+        for (Node<E> x = curNode.nextArr[0]; x != null; x = x.nextArr[0]) {
+            if(x.size() == levels) {
+                int depth = Math.min(levels + Integer.numberOfTrailingZeros(RANDOM.nextInt()), MAX_DEPTH);
+                if(depth > levels) {
+                    x.nextArr = Arrays.copyOf(x.nextArr, depth);
+                    x.prevArr = Arrays.copyOf(x.prevArr, depth);
+                }
+            }
+            for (int i = levels; i < x.size(); i++) {
+                last[i].nextArr[i] = x;
+                x.prevArr[i] = last[i] == head ? null : last[i];
+                last[i] = x;
+            }
+        }
+        for (int i = levels; i < MAX_DEPTH; i++) {
+            last[i].nextArr[i] = null;
+            head.prevArr[i] = last[i] == head ? null : last[i];
+        }
+    }
+    //endregion
 }
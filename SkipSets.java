@@ -0,0 +1,170 @@
+package util;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+/*SkipSet Algebra
+ * union, intersection, difference and symmetricDifference of two SkipSets, returned as new SkipSets.
+ * Intersection and difference walk one set while a Finger gallops through the other, costing O(m log(n/m)).
+ * Large inputs are cut into key ranges at the towers of an upper row of the larger set, and each range is
+ * merged by its own fork/join task into a list that is appended to the result in order.
+ * The in place variants are SkipSet.addAll, retainAll, removeAll and symmetricDifferenceInPlace, which walk
+ * one set with a Finger over the other in the same way.
+ */
+
+public final class SkipSets {
+    private static final int PARALLEL_THRESHOLD = 1 << 15;
+    private static final int RANGES_PER_THREAD = 4;
+
+    private enum Op {UNION, INTERSECTION, DIFFERENCE, SYMMETRIC_DIFFERENCE}
+
+    private SkipSets() {
+    }
+
+    //region Operations
+    /**
+     * @return the elements in a or b
+     */
+    public static <E> SkipSet<E> union(SkipSet<E> a, SkipSet<E> b) {
+        return compute(Op.UNION, a, b);
+    }
+
+    /**
+     * @return the elements in both a and b
+     */
+    public static <E> SkipSet<E> intersection(SkipSet<E> a, SkipSet<E> b) {
+        return compute(Op.INTERSECTION, a, b);
+    }
+
+    /**
+     * @return the elements in a but not in b
+     */
+    public static <E> SkipSet<E> difference(SkipSet<E> a, SkipSet<E> b) {
+        return compute(Op.DIFFERENCE, a, b);
+    }
+
+    /**
+     * @return the elements in exactly one of a and b
+     */
+    public static <E> SkipSet<E> symmetricDifference(SkipSet<E> a, SkipSet<E> b) {
+        return compute(Op.SYMMETRIC_DIFFERENCE, a, b);
+    }
+    //endregion
+
+    //region Ranges
+    private static <E> SkipSet<E> compute(Op op, SkipSet<E> a, SkipSet<E> b) {
+        SkipSet<E> result = new SkipSet<>();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if(a.size() + b.size() < PARALLEL_THRESHOLD || parallelism < 2) {
+            List<E> out = new ArrayList<>();
+            merge(op, a, b, null, null, out);
+            out.forEach(result::append);
+            return result;
+        }
+        List<E> splits = splits(a.size() >= b.size() ? a : b, parallelism * RANGES_PER_THREAD);
+        List<ForkJoinTask<List<E>>> tasks = new ArrayList<>(splits.size() + 1);
+        for (int i = 0; i <= splits.size(); i++) {
+            E lo = i == 0 ? null : splits.get(i - 1);
+            E hi = i == splits.size() ? null : splits.get(i);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                List<E> out = new ArrayList<>();
+                merge(op, a, b, lo, hi, out);
+                return out;
+            }));
+        }
+        for (ForkJoinTask<List<E>> task : ForkJoinTask.invokeAll(tasks)) {
+            task.join().forEach(result::append);
+        }
+        return result;
+    }
+
+    /**
+     * Returns about count keys of s, in order, read from the highest row holding at least that many towers.
+     */
+    private static <E> List<E> splits(SkipSet<E> s, int count) {
+        List<E> splits = new ArrayList<>();
+        for (int i = s.head.size() - 1; i >= 0; i--) {
+            int towers = 0;
+            for (SkipSet<E>.Node<E> n = s.head.nextArr[i]; n != null; n = n.nextArr[i]) {
+                towers++;
+            }
+            if(towers >= count || i == 0) {
+                int stride = Math.max(towers / count, 1);
+                int j = 0;
+                for (SkipSet<E>.Node<E> n = s.head.nextArr[i]; n != null; n = n.nextArr[i], j++) {
+                    if(j % stride == stride - 1) {
+                        splits.add(n.value);
+                    }
+                }
+                return splits;
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * Appends the result of op over the keys in [lo, hi) to out, where a null bound is unbounded.
+     */
+    private static <E> void merge(Op op, SkipSet<E> a, SkipSet<E> b, E lo, E hi, List<E> out) {
+        switch (op) {
+            case INTERSECTION -> {
+                if(a.size() > b.size()) {
+                    gallop(b, a, lo, hi, true, out);
+                } else {
+                    gallop(a, b, lo, hi, true, out);
+                }
+            }
+            case DIFFERENCE -> gallop(a, b, lo, hi, false, out);
+            default -> {
+                //Every element of either set may be in the result, so a linear merge is as good as galloping.
+                SkipSet<E>.Node<E> x = first(a, lo), y = first(b, lo);
+                while (true) {
+                    boolean hasX = below(x, hi), hasY = below(y, hi);
+                    if(!hasX && !hasY) {
+                        return;
+                    }
+                    int cmp = !hasX ? 1 : !hasY ? -1 : compare(x.value, y.value);
+                    if(cmp < 0) {
+                        out.add(x.value);
+                        x = x.nextArr[0];
+                    } else if(cmp > 0) {
+                        out.add(y.value);
+                        y = y.nextArr[0];
+                    } else {
+                        if(op == Op.UNION) {
+                            out.add(x.value);
+                        }
+                        x = x.nextArr[0];
+                        y = y.nextArr[0];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the keys of s in [lo, hi), keeping those whose presence in t equals keepPresent.
+     */
+    private static <E> void gallop(SkipSet<E> s, SkipSet<E> t, E lo, E hi, boolean keepPresent, List<E> out) {
+        SkipSet<E>.Finger finger = t.new Finger();
+        for (SkipSet<E>.Node<E> n = first(s, lo); below(n, hi); n = n.nextArr[0]) {
+            if((finger.match(n.value) != null) == keepPresent) {
+                out.add(n.value);
+            }
+        }
+    }
+
+    private static <E> SkipSet<E>.Node<E> first(SkipSet<E> s, E lo) {
+        return lo == null ? s.head.nextArr[0] : s.new Finger().seek(lo);
+    }
+
+    private static <E> boolean below(SkipSet<E>.Node<E> n, E hi) {
+        return n != null && (hi == null || compare(n.value, hi) < 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> int compare(E x, E y) {
+        return ((Comparable<? super E>) x).compareTo(y);
+    }
+    //endregion
+}
@@ -0,0 +1,543 @@
+package util;
+
+import java.util.*;
+/*SkipMap with inline arrays for small sizes
+ * { Object[] keys; Object[] values; int size; SkipMap<K,V> towers; }
+ * The map counterpart of SmallSkipSet: up to INLINE_CAPACITY entries are kept in two parallel sorted arrays
+ * and searched by binary search over keys, promoting into towers past it and demoting at DEMOTE_SIZE or fewer.
+ * Inline entries handed out are copies, whose setValue writes through to the map while the key is present.
+ */
+
+public class SmallSkipMap<K,V> extends AbstractMap<K,V> implements NavigableMap<K,V>, Cloneable, java.io.Serializable {
+    public static final int INLINE_CAPACITY = 16;
+    public static final int DEMOTE_SIZE = INLINE_CAPACITY / 2;
+    private static final int INITIAL_CAPACITY = 4;
+    //Sorted inline keys and their values in [0, size), null while empty or promoted.
+    private transient Object[] keys;
+    private transient Object[] values;
+    private transient int size;
+    //Null unless promoted.
+    private transient SkipMap<K,V> towers;
+
+    public SmallSkipMap() {
+    }
+
+    public SmallSkipMap(Map<? extends K, ? extends V> m) {
+        putAll(m);
+    }
+
+    /**
+     * @return true if the entries are held in towers rather than inline
+     */
+    public boolean isPromoted() {
+        return towers != null;
+    }
+
+    //region Search
+    /**
+     * Binary search over the inline keys, with the same result convention as {@link Arrays#binarySearch(Object[], Object)}.
+     */
+    @SuppressWarnings("unchecked")
+    private int indexOf(Object key) {
+        Comparable<? super K> k = (Comparable<? super K>) key;
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = k.compareTo((K) keys[mid]);
+            if (cmp > 0) {
+                lo = mid + 1;
+            } else if (cmp < 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * @return a copy of the inline entry at i, or null if i is out of range
+     */
+    @SuppressWarnings("unchecked")
+    private Map.Entry<K,V> entryAt(int i) {
+        if(i < 0 || i >= size) {
+            return null;
+        }
+        return new SimpleEntry<>((K) keys[i], (V) values[i]) {
+            @Override
+            public V setValue(V value) {
+                V oldValue = super.setValue(value);
+                replace(getKey(), value);
+                return oldValue;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyAt(int i) {
+        return i >= 0 && i < size ? (K) keys[i] : null;
+    }
+    //endregion
+
+    //region Get
+    @Override
+    public int size() {
+        return towers != null ? towers.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return towers != null ? towers.containsKey(key) : indexOf(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if(towers != null) {
+            return towers.get(key);
+        }
+        int i = indexOf(key);
+        return i >= 0 ? (V) values[i] : null;
+    }
+
+    @Override
+    public Map.Entry<K,V> lowerEntry(K key) {
+        if(towers != null) {
+            return towers.lowerEntry(key);
+        }
+        int i = indexOf(key);
+        return entryAt(i >= 0 ? i - 1 : -(i + 1) - 1);
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        if(towers != null) {
+            return towers.lowerKey(key);
+        }
+        int i = indexOf(key);
+        return keyAt(i >= 0 ? i - 1 : -(i + 1) - 1);
+    }
+
+    @Override
+    public Map.Entry<K,V> floorEntry(K key) {
+        if(towers != null) {
+            return towers.floorEntry(key);
+        }
+        int i = indexOf(key);
+        return entryAt(i >= 0 ? i : -(i + 1) - 1);
+    }
+
+    @Override
+    public K floorKey(K key) {
+        if(towers != null) {
+            return towers.floorKey(key);
+        }
+        int i = indexOf(key);
+        return keyAt(i >= 0 ? i : -(i + 1) - 1);
+    }
+
+    @Override
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        if(towers != null) {
+            return towers.ceilingEntry(key);
+        }
+        int i = indexOf(key);
+        return entryAt(i >= 0 ? i : -(i + 1));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        if(towers != null) {
+            return towers.ceilingKey(key);
+        }
+        int i = indexOf(key);
+        return keyAt(i >= 0 ? i : -(i + 1));
+    }
+
+    @Override
+    public Map.Entry<K,V> higherEntry(K key) {
+        if(towers != null) {
+            return towers.higherEntry(key);
+        }
+        int i = indexOf(key);
+        return entryAt(i >= 0 ? i + 1 : -(i + 1));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        if(towers != null) {
+            return towers.higherKey(key);
+        }
+        int i = indexOf(key);
+        return keyAt(i >= 0 ? i + 1 : -(i + 1));
+    }
+
+    @Override
+    public Map.Entry<K,V> firstEntry() {
+        return towers != null ? towers.firstEntry() : entryAt(0);
+    }
+
+    @Override
+    public Map.Entry<K,V> lastEntry() {
+        return towers != null ? towers.lastEntry() : entryAt(size - 1);
+    }
+
+    @Override
+    public K firstKey() {
+        if(towers != null) {
+            return towers.firstKey();
+        } else if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return keyAt(0);
+    }
+
+    @Override
+    public K lastKey() {
+        if(towers != null) {
+            return towers.lastKey();
+        } else if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return keyAt(size - 1);
+    }
+    //endregion
+
+    //region Add
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if(towers != null) {
+            return towers.put(key, value);
+        }
+        int i = indexOf(key);
+        if(i >= 0) {
+            V oldValue = (V) values[i];
+            values[i] = value;
+            return oldValue;
+        }
+        i = -(i + 1);
+        if(size == INLINE_CAPACITY) {
+            promote();
+            return towers.put(key, value);
+        }
+        grow();
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(values, i, values, i + 1, size - i);
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Adds an entry whose key is greater than every key in the map.
+     */
+    private void append(K key, V value) {
+        if(towers == null && size == INLINE_CAPACITY) {
+            promote();
+        }
+        if(towers != null) {
+            towers.append(key, value);
+            return;
+        }
+        grow();
+        keys[size] = key;
+        values[size++] = value;
+    }
+
+    /**
+     * Makes room for one more inline entry.
+     */
+    private void grow() {
+        if(keys == null) {
+            keys = new Object[INITIAL_CAPACITY];
+            values = new Object[INITIAL_CAPACITY];
+        } else if(size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.min(size * 2, INLINE_CAPACITY));
+            values = Arrays.copyOf(values, keys.length);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void promote() {
+        towers = new SkipMap<>();
+        for (int i = 0; i < size; i++) {
+            towers.append((K) keys[i], (V) values[i]);
+        }
+        keys = null;
+        values = null;
+        size = 0;
+    }
+    //endregion
+
+    //region Remove
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if(towers != null) {
+            V oldValue = towers.remove(key);
+            demoteIfSmall();
+            return oldValue;
+        }
+        int i = indexOf(key);
+        if(i < 0) {
+            return null;
+        }
+        V oldValue = (V) values[i];
+        removeAt(i);
+        return oldValue;
+    }
+
+    /**
+     * Polled entries are immutable snapshots, as the key is no longer in the map to write through to.
+     */
+    @Override
+    public Map.Entry<K,V> pollFirstEntry() {
+        return poll(towers != null ? towers.firstEntry() : entryAt(0));
+    }
+
+    @Override
+    public Map.Entry<K,V> pollLastEntry() {
+        return poll(towers != null ? towers.lastEntry() : entryAt(size - 1));
+    }
+
+    private Map.Entry<K,V> poll(Map.Entry<K,V> e) {
+        if(e == null) {
+            return null;
+        }
+        remove(e.getKey());
+        return new SimpleImmutableEntry<>(e);
+    }
+
+    @Override
+    public void clear() {
+        keys = null;
+        values = null;
+        size = 0;
+        towers = null;
+    }
+
+    private void removeAt(int i) {
+        size--;
+        System.arraycopy(keys, i + 1, keys, i, size - i);
+        System.arraycopy(values, i + 1, values, i, size - i);
+        keys[size] = null;
+        values[size] = null;
+    }
+
+    private void demoteIfSmall() {
+        if(towers.size() <= DEMOTE_SIZE) {
+            keys = new Object[INLINE_CAPACITY];
+            values = new Object[INLINE_CAPACITY];
+            for (SkipMap.Entry<K,V> e = towers.head.nextArr[0]; e != null; e = e.nextArr[0], size++) {
+                keys[size] = e.key;
+                values[size] = e.value;
+            }
+            towers = null;
+        }
+    }
+    //endregion
+
+    //region Iterate
+    /**
+     * Entries of a promoted map are its tower entries, and removing through their iterator never demotes it.
+     */
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K,V>> iterator() {
+                if(towers != null) {
+                    return towers.entrySet().iterator();
+                }
+                return new Iterator<>() {
+                    int index;
+                    int lastIndex = -1;
+                    @Override
+                    public boolean hasNext() {
+                        return index < size;
+                    }
+
+                    @Override
+                    public Map.Entry<K,V> next() {
+                        if(index >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        lastIndex = index;
+                        return entryAt(index++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if(lastIndex < 0) {
+                            throw new IllegalStateException();
+                        }
+                        removeAt(lastIndex);
+                        index--;
+                        lastIndex = -1;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SmallSkipMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                SmallSkipMap.this.clear();
+            }
+        };
+    }
+    //endregion
+
+    //region Views
+    @Override
+    public Comparator<? super K> comparator() {
+        return null;
+    }
+
+    /**
+     * @return an unmodifiable descending copy
+     */
+    @Override
+    public NavigableMap<K,V> descendingMap() {
+        return Collections.unmodifiableNavigableMap(new TreeMap<>(this).descendingMap());
+    }
+
+    /**
+     * @return an unmodifiable copy of the keys, while {@link #keySet()} is a view
+     */
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return Collections.unmodifiableNavigableSet(new TreeMap<>(this).navigableKeySet());
+    }
+
+    /**
+     * @return an unmodifiable descending copy of the keys
+     */
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return Collections.unmodifiableNavigableSet(new TreeMap<>(this).descendingKeySet());
+    }
+
+    /**
+     * Range views are unmodifiable copies, taken in O(log n + k) for k entries in range.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if(((Comparable<? super K>) fromKey).compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return range(Objects.requireNonNull(fromKey), fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+        return range(null, true, Objects.requireNonNull(toKey), inclusive);
+    }
+
+    @Override
+    public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        return range(Objects.requireNonNull(fromKey), inclusive, null, true);
+    }
+
+    @Override
+    public SortedMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * Copies the entries between two bounds in order, a null bound being unbounded.
+     */
+    @SuppressWarnings("unchecked")
+    private NavigableMap<K,V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        SmallSkipMap<K,V> range = new SmallSkipMap<>();
+        if(towers != null) {
+            SkipMap.Entry<K,V> e = from == null ? towers.head.nextArr[0]
+                    : fromInclusive ? towers.ceilingEntry(from) : towers.higherEntry(from);
+            for (; e != null && below(e.key, to, toInclusive); e = e.nextArr[0]) {
+                range.append(e.key, e.value);
+            }
+        } else {
+            int i = from == null ? 0 : indexOf(from);
+            i = i >= 0 ? (fromInclusive ? i : i + 1) : -(i + 1);
+            for (; i < size && below(keyAt(i), to, toInclusive); i++) {
+                range.append(keyAt(i), (V) values[i]);
+            }
+        }
+        return Collections.unmodifiableNavigableMap(range);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> boolean below(K key, K to, boolean inclusive) {
+        if(to == null) {
+            return true;
+        }
+        int cmp = ((Comparable<? super K>) key).compareTo(to);
+        return cmp < 0 || inclusive && cmp == 0;
+    }
+    //endregion
+
+    //region Clone
+    @Override
+    @SuppressWarnings("unchecked")
+    public SmallSkipMap<K,V> clone() {
+        try {
+            SmallSkipMap<K,V> clone = (SmallSkipMap<K,V>) super.clone();
+            if(keys != null) {
+                clone.keys = keys.clone();
+                clone.values = values.clone();
+            }
+            if(towers != null) {
+                clone.towers = new SkipMap<>();
+                for (SkipMap.Entry<K,V> e = towers.head.nextArr[0]; e != null; e = e.nextArr[0]) {
+                    clone.towers.append(e.key, e.value);
+                }
+            }
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    @java.io.Serial
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size());
+        for (Map.Entry<K,V> e : entrySet()) {
+            s.writeObject(e.getKey());
+            s.writeObject(e.getValue());
+        }
+    }
+
+    @java.io.Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int size = s.readInt();
+        for (int i = 0; i < size; i++) {
+            put((K) s.readObject(), (V) s.readObject());
+        }
+    }
+    //endregion
+}
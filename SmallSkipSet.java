@@ -0,0 +1,505 @@
+package util;
+
+import java.util.*;
+/*SkipSet with an inline array for small sizes
+ * { Object[] values; int size; SkipSet<E> towers; }
+ * Up to INLINE_CAPACITY elements are kept sorted in values, which grows from nothing, and searched by binary search.
+ * The add past INLINE_CAPACITY promotes the elements into towers in O(n) by appending them in order, and a remove
+ * that leaves DEMOTE_SIZE or fewer demotes them back, the gap between the two keeping a set that hovers around
+ * one size from promoting and demoting on every change. An empty set holds no array at all.
+ */
+
+public class SmallSkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Cloneable, java.io.Serializable {
+    public static final int INLINE_CAPACITY = 16;
+    public static final int DEMOTE_SIZE = INLINE_CAPACITY / 2;
+    private static final int INITIAL_CAPACITY = 4;
+    //Sorted inline elements in [0, size), null while empty or promoted.
+    private transient Object[] values;
+    private transient int size;
+    //Null unless promoted.
+    private transient SkipSet<E> towers;
+
+    public SmallSkipSet() {
+    }
+
+    public SmallSkipSet(Collection<? extends E> c) {
+        addAll(c);
+    }
+
+    /**
+     * @return true if the elements are held in towers rather than inline
+     */
+    public boolean isPromoted() {
+        return towers != null;
+    }
+
+    //region Search
+    /**
+     * Binary search over the inline elements, with the same result convention as {@link Arrays#binarySearch(Object[], Object)}.
+     */
+    @SuppressWarnings("unchecked")
+    private int indexOf(Object o) {
+        Comparable<? super E> k = (Comparable<? super E>) o;
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = k.compareTo((E) values[mid]);
+            if (cmp > 0) {
+                lo = mid + 1;
+            } else if (cmp < 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * @return the inline element at i, or null if i is out of range
+     */
+    @SuppressWarnings("unchecked")
+    private E at(int i) {
+        return i >= 0 && i < size ? (E) values[i] : null;
+    }
+    //endregion
+
+    //region Get
+    @Override
+    public E first() {
+        if(towers != null) {
+            return towers.first();
+        } else if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return at(0);
+    }
+
+    @Override
+    public E last() {
+        if(towers != null) {
+            return towers.last();
+        } else if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return at(size - 1);
+    }
+
+    @Override
+    public int size() {
+        return towers != null ? towers.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return towers != null ? towers.contains(o) : indexOf(o) >= 0;
+    }
+
+    @Override
+    public E lower(E e) {
+        if(towers != null) {
+            return towers.lower(e);
+        }
+        int i = indexOf(e);
+        return at(i >= 0 ? i - 1 : -(i + 1) - 1);
+    }
+
+    @Override
+    public E floor(E e) {
+        if(towers != null) {
+            return towers.floor(e);
+        }
+        int i = indexOf(e);
+        return at(i >= 0 ? i : -(i + 1) - 1);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        if(towers != null) {
+            return towers.ceiling(e);
+        }
+        int i = indexOf(e);
+        return at(i >= 0 ? i : -(i + 1));
+    }
+
+    @Override
+    public E higher(E e) {
+        if(towers != null) {
+            return towers.higher(e);
+        }
+        int i = indexOf(e);
+        return at(i >= 0 ? i + 1 : -(i + 1));
+    }
+    //endregion
+
+    //region Add
+    @Override
+    public boolean add(E e) {
+        if(towers != null) {
+            return towers.add(e);
+        }
+        int i = indexOf(e);
+        if(i >= 0) {
+            return false;
+        }
+        i = -(i + 1);
+        if(size == INLINE_CAPACITY) {
+            promote();
+            return towers.add(e);
+        }
+        grow();
+        System.arraycopy(values, i, values, i + 1, size - i);
+        values[i] = e;
+        size++;
+        return true;
+    }
+
+    /**
+     * Adds an element greater than every element in the set.
+     */
+    private void append(E e) {
+        if(towers == null && size == INLINE_CAPACITY) {
+            promote();
+        }
+        if(towers != null) {
+            towers.append(e);
+            return;
+        }
+        grow();
+        values[size++] = e;
+    }
+
+    /**
+     * Makes room for one more inline element.
+     */
+    private void grow() {
+        if(values == null) {
+            values = new Object[INITIAL_CAPACITY];
+        } else if(size == values.length) {
+            values = Arrays.copyOf(values, Math.min(size * 2, INLINE_CAPACITY));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void promote() {
+        towers = new SkipSet<>();
+        for (int i = 0; i < size; i++) {
+            towers.append((E) values[i]);
+        }
+        values = null;
+        size = 0;
+    }
+    //endregion
+
+    //region Remove
+    @Override
+    public E pollFirst() {
+        if(towers != null) {
+            E value = towers.pollFirst();
+            demoteIfSmall();
+            return value;
+        }
+        E value = at(0);
+        if(value != null) {
+            removeAt(0);
+        }
+        return value;
+    }
+
+    @Override
+    public E pollLast() {
+        if(towers != null) {
+            E value = towers.pollLast();
+            demoteIfSmall();
+            return value;
+        }
+        E value = at(size - 1);
+        if(value != null) {
+            removeAt(size - 1);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if(towers != null) {
+            boolean removed = towers.remove(o);
+            demoteIfSmall();
+            return removed;
+        }
+        int i = indexOf(o);
+        if(i < 0) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        values = null;
+        size = 0;
+        towers = null;
+    }
+
+    private void removeAt(int i) {
+        size--;
+        System.arraycopy(values, i + 1, values, i, size - i);
+        values[size] = null;
+    }
+
+    private void demoteIfSmall() {
+        if(towers.size() <= DEMOTE_SIZE) {
+            values = new Object[INLINE_CAPACITY];
+            for (SkipSet<E>.Node<E> n = towers.head.nextArr[0]; n != null; n = n.nextArr[0]) {
+                values[size++] = n.value;
+            }
+            towers = null;
+        }
+    }
+    //endregion
+
+    //region Iterate
+    /**
+     * Iterates the inline elements, which iterator remove() shifts under it.
+     */
+    class InlineIterator implements Iterator<E> {
+        final boolean descending;
+        int index;
+        int lastIndex = -1;
+        InlineIterator(boolean descending) {
+            this.descending = descending;
+            index = descending ? size - 1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return descending ? index >= 0 : index < size;
+        }
+
+        @Override
+        public E next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastIndex = index;
+            index += descending ? -1 : 1;
+            return at(lastIndex);
+        }
+
+        @Override
+        public void remove() {
+            if(lastIndex < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(lastIndex);
+            if(!descending) {
+                index--;
+            }
+            lastIndex = -1;
+        }
+    }
+
+    /**
+     * Walks the bottom row of the towers backwards.
+     */
+    class DescendingTowerIterator implements Iterator<E> {
+        final SkipSet<E> set = towers;
+        SkipSet<E>.Node<E> curNode = set.head.prevArr[0];
+        SkipSet<E>.Node<E> lastNode;
+
+        @Override
+        public boolean hasNext() {
+            return curNode != null;
+        }
+
+        @Override
+        public E next() {
+            if(curNode == null) {
+                throw new NoSuchElementException();
+            }
+            lastNode = curNode;
+            curNode = curNode.prevArr[0];
+            return lastNode.value;
+        }
+
+        @Override
+        public void remove() {
+            if(lastNode == null) {
+                throw new IllegalStateException();
+            }
+            set.remove(lastNode);
+            set.size--;
+            lastNode = null;
+        }
+    }
+
+    /**
+     * Iterators of a promoted set walk its towers, and removing through them never demotes it.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return towers != null ? towers.iterator() : new InlineIterator(false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return towers != null ? new DescendingTowerIterator() : new InlineIterator(true);
+    }
+
+    @Override
+    public Object[] toArray() {
+        if(towers != null) {
+            return towers.toArray();
+        }
+        return size == 0 ? new Object[0] : Arrays.copyOf(values, size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if(towers != null) {
+            return towers.toArray(a);
+        }
+        if (a.length < size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        if(size > 0) {
+            System.arraycopy(values, 0, a, 0, size);
+        }
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+    //endregion
+
+    //region Views
+    @Override
+    public Comparator<? super E> comparator() {
+        return null;
+    }
+
+    /**
+     * @return an unmodifiable descending copy
+     */
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return Collections.unmodifiableNavigableSet(new TreeSet<>(this).descendingSet());
+    }
+
+    /**
+     * Range views are unmodifiable copies, taken in O(log n + k) for k elements in range.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if(((Comparable<? super E>) fromElement).compareTo(toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return range(Objects.requireNonNull(fromElement), fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return range(null, true, Objects.requireNonNull(toElement), inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return range(Objects.requireNonNull(fromElement), inclusive, null, true);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Copies the elements between two bounds in order, a null bound being unbounded.
+     */
+    @SuppressWarnings("unchecked")
+    private NavigableSet<E> range(E from, boolean fromInclusive, E to, boolean toInclusive) {
+        SmallSkipSet<E> range = new SmallSkipSet<>();
+        if(towers != null) {
+            SkipSet<E>.Node<E> n = from == null ? towers.head.nextArr[0] : towers.new Finger().seek(from);
+            if(n != null && !fromInclusive && ((Comparable<? super E>) from).compareTo(n.value) == 0) {
+                n = n.nextArr[0];
+            }
+            for (; n != null && below(n.value, to, toInclusive); n = n.nextArr[0]) {
+                range.append(n.value);
+            }
+        } else {
+            int i = from == null ? 0 : indexOf(from);
+            i = i >= 0 ? (fromInclusive ? i : i + 1) : -(i + 1);
+            for (; i < size && below(at(i), to, toInclusive); i++) {
+                range.append(at(i));
+            }
+        }
+        return Collections.unmodifiableNavigableSet(range);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> boolean below(E e, E to, boolean inclusive) {
+        if(to == null) {
+            return true;
+        }
+        int cmp = ((Comparable<? super E>) e).compareTo(to);
+        return cmp < 0 || inclusive && cmp == 0;
+    }
+    //endregion
+
+    //region Clone
+    @Override
+    @SuppressWarnings("unchecked")
+    public SmallSkipSet<E> clone() {
+        try {
+            SmallSkipSet<E> clone = (SmallSkipSet<E>) super.clone();
+            if(values != null) {
+                clone.values = values.clone();
+            }
+            if(towers != null) {
+                clone.towers = towers.clone();
+            }
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    @java.io.Serial
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size());
+        for (E e : this) {
+            s.writeObject(e);
+        }
+    }
+
+    @java.io.Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int size = s.readInt();
+        for (int i = 0; i < size; i++) {
+            add((E) s.readObject());
+        }
+    }
+    //endregion
+}
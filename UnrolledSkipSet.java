@@ -0,0 +1,612 @@
+package util;
+
+import java.util.*;
+/*Unrolled "Tower-Based" SkipSet
+ * Block<F> { Object[] values; int count; Block<F>[] nexts; Block<F>[] prevs; }
+ * Level 0 links blocks of sorted values, upper levels index blocks by their first value.
+ */
+
+public class UnrolledSkipSet<E> extends AbstractSet<E> implements NavigableSet<E>, Cloneable, java.io.Serializable {
+    static class Block<F> {
+        Block<F>[] nextArr;
+        Block<F>[] prevArr;
+        Object[] values;
+        int count;
+        @SuppressWarnings("unchecked")
+        Block(int capacity, int depth) {
+            values = new Object[capacity];
+            prevArr = new Block[depth];
+            nextArr = new Block[depth];
+        }
+        Block(int capacity) {
+            this(capacity, Math.min(Integer.numberOfTrailingZeros(RANDOM.nextInt()) + 1, MAX_DEPTH));
+        }
+        @SuppressWarnings("unchecked")
+        F get(int i) {
+            return (F) values[i];
+        }
+        F first() {
+            return get(0);
+        }
+        F last() {
+            return get(count - 1);
+        }
+    }
+
+    transient Block<E> head = new Block<>(0, MAX_DEPTH);
+    transient int size;
+    final int blockCapacity;
+    public static final int MIN_BLOCK_CAPACITY = 16;
+    public static final int MAX_BLOCK_CAPACITY = 64;
+    private static final int DEFAULT_BLOCK_CAPACITY = 32;
+    private static final int MAX_DEPTH = 32;
+    private static final Random RANDOM = new Random();
+
+    public UnrolledSkipSet() {
+        this(DEFAULT_BLOCK_CAPACITY);
+    }
+
+    /**
+     * @param blockCapacity the number of values held by each block, between {@link #MIN_BLOCK_CAPACITY}
+     *                      and {@link #MAX_BLOCK_CAPACITY}
+     * @throws IllegalArgumentException if the capacity is out of range
+     */
+    public UnrolledSkipSet(int blockCapacity) {
+        if(blockCapacity < MIN_BLOCK_CAPACITY || blockCapacity > MAX_BLOCK_CAPACITY) {
+            throw new IllegalArgumentException("Block capacity: " + blockCapacity);
+        }
+        this.blockCapacity = blockCapacity;
+    }
+
+    public UnrolledSkipSet(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    //region Search
+    /**
+     * Returns the last block whose first value is not greater than the key, or head if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private Block<E> findBlock(Object o) {
+        Comparable<? super E> k = (Comparable<? super E>) o;
+        Block<E> curBlock = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curBlock.nextArr[i] != null && k.compareTo(curBlock.nextArr[i].first()) >= 0) {
+                curBlock = curBlock.nextArr[i];
+            }
+        }
+        return curBlock;
+    }
+
+    /**
+     * Binary search over a block, with the same result convention as {@link Arrays#binarySearch(Object[], Object)}.
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> int indexOf(Block<F> b, Object o) {
+        Comparable<? super F> k = (Comparable<? super F>) o;
+        int lo = 0;
+        int hi = b.count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = k.compareTo(b.get(mid));
+            if (cmp > 0) {
+                lo = mid + 1;
+            } else if (cmp < 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+    //endregion
+
+    //region Get
+    @Override
+    public E first() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return head.nextArr[0].first();
+    }
+
+    @Override
+    public E last() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return head.prevArr[0].last();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        Block<E> b = findBlock(o);
+        return b != head && indexOf(b, o) >= 0;
+    }
+
+    @Override
+    public E lower(E e) {
+        Block<E> b = findBlock(e);
+        if(b == head) {
+            return null;
+        }
+        int i = indexOf(b, e);
+        i = (i >= 0 ? i : -(i + 1)) - 1;
+        if(i >= 0) {
+            return b.get(i);
+        }
+        return b.prevArr[0] == null ? null : b.prevArr[0].last();
+    }
+
+    @Override
+    public E floor(E e) {
+        Block<E> b = findBlock(e);
+        if(b == head) {
+            return null;
+        }
+        int i = indexOf(b, e);
+        return b.get(i >= 0 ? i : -(i + 1) - 1);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        Block<E> b = findBlock(e);
+        if(b == head) {
+            return size == 0 ? null : first();
+        }
+        int i = indexOf(b, e);
+        i = i >= 0 ? i : -(i + 1);
+        if(i < b.count) {
+            return b.get(i);
+        }
+        return b.nextArr[0] == null ? null : b.nextArr[0].first();
+    }
+
+    @Override
+    public E higher(E e) {
+        Block<E> b = findBlock(e);
+        if(b == head) {
+            return size == 0 ? null : first();
+        }
+        int i = indexOf(b, e);
+        i = i >= 0 ? i + 1 : -(i + 1);
+        if(i < b.count) {
+            return b.get(i);
+        }
+        return b.nextArr[0] == null ? null : b.nextArr[0].first();
+    }
+    //endregion
+
+    //region Add
+    @Override
+    public boolean add(E e) {
+        Block<E> b = findBlock(e);
+        if(b == head) {
+            //Keys below the first block go to the front of the first block.
+            b = head.nextArr[0];
+            if(b == null) {
+                b = new Block<>(blockCapacity);
+                link(b, e);
+            }
+        }
+        int i = indexOf(b, e);
+        if(i >= 0) {
+            return false;
+        }
+        i = -(i + 1);
+        if(b.count == blockCapacity) {
+            Block<E> split = split(b);
+            if(i > b.count) {
+                i -= b.count;
+                b = split;
+            }
+        }
+        System.arraycopy(b.values, i, b.values, i + 1, b.count - i);
+        b.values[i] = e;
+        b.count++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves the upper half of a full block into a new block linked after it.
+     */
+    private Block<E> split(Block<E> b) {
+        Block<E> split = new Block<>(blockCapacity);
+        int half = b.count >>> 1;
+        split.count = b.count - half;
+        System.arraycopy(b.values, half, split.values, 0, split.count);
+        Arrays.fill(b.values, half, b.count, null);
+        b.count = half;
+        link(split, split.first());
+        return split;
+    }
+
+    /**
+     * Links a block at every level of its tower, in front of the blocks whose first value is greater than the key.
+     */
+    @SuppressWarnings("unchecked")
+    private void link(Block<E> b, E key) {
+        Comparable<? super E> k = (Comparable<? super E>) key;
+        Block<E> curBlock = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            while (curBlock.nextArr[i] != null && k.compareTo(curBlock.nextArr[i].first()) > 0) {
+                curBlock = curBlock.nextArr[i];
+            }
+            if(i < b.nextArr.length) {
+                (curBlock.nextArr[i] == null ? head : curBlock.nextArr[i]).prevArr[i] = b;
+                b.nextArr[i] = curBlock.nextArr[i];
+                if(curBlock != head) {
+                    b.prevArr[i] = curBlock;
+                }
+                curBlock.nextArr[i] = b;
+            }
+        }
+    }
+
+    /**
+     * Adds a value greater than every value in the set, filling the last block before starting another.
+     */
+    private void append(E e) {
+        Block<E> b = head.prevArr[0];
+        if(b == null || b.count == blockCapacity) {
+            b = new Block<>(blockCapacity);
+            linkLast(b);
+        }
+        b.values[b.count++] = e;
+        size++;
+    }
+
+    /**
+     * Links a block after every block of each row of its tower.
+     */
+    private void linkLast(Block<E> b) {
+        for (int i = 0; i < b.nextArr.length; i++) {
+            if(head.prevArr[i] != null) {
+                b.prevArr[i] = head.prevArr[i];
+                head.prevArr[i].nextArr[i] = b;
+            } else {
+                head.nextArr[i] = b;
+            }
+            head.prevArr[i] = b;
+        }
+    }
+    //endregion
+
+    //region Remove
+    @Override
+    public E pollFirst() {
+        if(size == 0) {
+            return null;
+        }
+        Block<E> b = head.nextArr[0];
+        E value = b.first();
+        removeAt(b, 0);
+        return value;
+    }
+
+    @Override
+    public E pollLast() {
+        if(size == 0) {
+            return null;
+        }
+        Block<E> b = head.prevArr[0];
+        E value = b.last();
+        removeAt(b, b.count - 1);
+        return value;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Block<E> b = findBlock(o);
+        if(b == head) {
+            return false;
+        }
+        int i = indexOf(b, o);
+        if(i < 0) {
+            return false;
+        }
+        removeAt(b, i);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        Arrays.fill(head.nextArr, null);
+        Arrays.fill(head.prevArr, null);
+    }
+
+    private void removeAt(Block<E> b, int i) {
+        b.count--;
+        System.arraycopy(b.values, i + 1, b.values, i, b.count - i);
+        b.values[b.count] = null;
+        size--;
+        if(b.count == 0) {
+            unlink(b);
+        } else if(b.count < blockCapacity >>> 2) {
+            //Merge sparse blocks into a neighbour when the result leaves room for inserts.
+            Block<E> next = b.nextArr[0];
+            Block<E> prev = b.prevArr[0];
+            if(next != null && b.count + next.count <= blockCapacity * 3 / 4) {
+                System.arraycopy(next.values, 0, b.values, b.count, next.count);
+                b.count += next.count;
+                unlink(next);
+            } else if(prev != null && prev.count + b.count <= blockCapacity * 3 / 4) {
+                System.arraycopy(b.values, 0, prev.values, prev.count, b.count);
+                prev.count += b.count;
+                unlink(b);
+            }
+        }
+    }
+
+    private void unlink(Block<E> b) {
+        for(int i = 0; i < b.nextArr.length; i++) {
+            (b.prevArr[i] == null ? head : b.prevArr[i]).nextArr[i] = b.nextArr[i];
+            (b.nextArr[i] == null ? head : b.nextArr[i]).prevArr[i] = b.prevArr[i];
+        }
+    }
+    //endregion
+
+    //region Iterate
+    class BlockIterator implements Iterator<E> {
+        final boolean descending;
+        Block<E> curBlock;
+        int index;
+        E lastValue;
+        boolean removable;
+        BlockIterator(boolean descending) {
+            this.descending = descending;
+            curBlock = descending ? head.prevArr[0] : head.nextArr[0];
+            index = descending && curBlock != null ? curBlock.count - 1 : 0;
+        }
+
+        /**
+         * Starts at the first value from the bound on in the direction of iteration.
+         */
+        BlockIterator(E from, boolean inclusive, boolean descending) {
+            this.descending = descending;
+            curBlock = findBlock(from);
+            if(curBlock == head) {
+                curBlock = descending ? null : head.nextArr[0];
+                return;
+            }
+            int i = indexOf(curBlock, from);
+            if(descending) {
+                index = i >= 0 ? (inclusive ? i : i - 1) : -(i + 1) - 1;
+                if(index < 0) {
+                    curBlock = curBlock.prevArr[0];
+                    index = curBlock == null ? 0 : curBlock.count - 1;
+                }
+            } else {
+                index = i >= 0 ? (inclusive ? i : i + 1) : -(i + 1);
+                if(index == curBlock.count) {
+                    curBlock = curBlock.nextArr[0];
+                    index = 0;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return curBlock != null;
+        }
+
+        @Override
+        public E next() {
+            if(curBlock == null) {
+                throw new NoSuchElementException();
+            }
+            lastValue = curBlock.get(index);
+            removable = true;
+            if(descending) {
+                if(--index < 0) {
+                    curBlock = curBlock.prevArr[0];
+                    index = curBlock == null ? 0 : curBlock.count - 1;
+                }
+            } else if(++index == curBlock.count) {
+                curBlock = curBlock.nextArr[0];
+                index = 0;
+            }
+            return lastValue;
+        }
+
+        @Override
+        public void remove() {
+            if(!removable) {
+                throw new IllegalStateException();
+            }
+            removable = false;
+            UnrolledSkipSet.this.remove(lastValue);
+            //Blocks may have merged, so find the position of the next value again.
+            E next = descending ? lower(lastValue) : higher(lastValue);
+            if(next == null) {
+                curBlock = null;
+            } else {
+                curBlock = findBlock(next);
+                index = indexOf(curBlock, next);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new BlockIterator(false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new BlockIterator(true);
+    }
+
+    /**
+     * @return an iterator over the values from a bound on, positioned by one descent to its block
+     */
+    public Iterator<E> iterator(E from, boolean inclusive) {
+        return new BlockIterator(Objects.requireNonNull(from), inclusive, false);
+    }
+
+    /**
+     * @return a descending iterator over the values from a bound down, positioned by one descent to its block
+     */
+    public Iterator<E> descendingIterator(E from, boolean inclusive) {
+        return new BlockIterator(Objects.requireNonNull(from), inclusive, true);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        int i = 0;
+        for(Block<E> b = head.nextArr[0]; b != null; b = b.nextArr[0]) {
+            System.arraycopy(b.values, 0, result, i, b.count);
+            i += b.count;
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        int i = 0;
+        for(Block<E> b = head.nextArr[0]; b != null; b = b.nextArr[0]) {
+            System.arraycopy(b.values, 0, a, i, b.count);
+            i += b.count;
+        }
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+    //endregion
+
+    //region Views
+    @Override
+    public Comparator<? super E> comparator() {
+        return null;
+    }
+
+    /**
+     * @return an unmodifiable descending copy
+     */
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return Collections.unmodifiableNavigableSet(new TreeSet<>(this).descendingSet());
+    }
+
+    /**
+     * Range views are unmodifiable copies, taken in O(log n + k) for k values in range by iterating from the
+     * lower bound and appending to full blocks.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if(((Comparable<? super E>) fromElement).compareTo(toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return range(iterator(fromElement, fromInclusive), toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return range(iterator(), Objects.requireNonNull(toElement), inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return range(iterator(fromElement, inclusive), null, true);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Copies the values of an ascending iterator up to a bound, a null bound being unbounded.
+     */
+    @SuppressWarnings("unchecked")
+    private NavigableSet<E> range(Iterator<E> it, E to, boolean toInclusive) {
+        UnrolledSkipSet<E> range = new UnrolledSkipSet<>(blockCapacity);
+        while (it.hasNext()) {
+            E e = it.next();
+            if(to != null) {
+                int cmp = ((Comparable<? super E>) e).compareTo(to);
+                if(cmp > 0 || !toInclusive && cmp == 0) {
+                    break;
+                }
+            }
+            range.append(e);
+        }
+        return Collections.unmodifiableNavigableSet(range);
+    }
+    //endregion
+
+    //region Clone
+    /**
+     * Copies the set in O(n), block by block in order.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public UnrolledSkipSet<E> clone() {
+        try {
+            UnrolledSkipSet<E> clone = (UnrolledSkipSet<E>) super.clone();
+            clone.head = new Block<>(0, MAX_DEPTH);
+            for(Block<E> b = head.nextArr[0]; b != null; b = b.nextArr[0]) {
+                Block<E> copy = new Block<>(blockCapacity);
+                System.arraycopy(b.values, 0, copy.values, 0, b.count);
+                copy.count = b.count;
+                clone.linkLast(copy);
+            }
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    @java.io.Serial
+    private void writeObject(java.io.ObjectOutputStream s) throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        for(Block<E> b = head.nextArr[0]; b != null; b = b.nextArr[0]) {
+            for(int i = 0; i < b.count; i++) {
+                s.writeObject(b.values[i]);
+            }
+        }
+    }
+
+    @java.io.Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        head = new Block<>(0, MAX_DEPTH);
+        int size = s.readInt();
+        for (int i = 0; i < size; i++) {
+            add((E) s.readObject());
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,416 @@
+package util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+/*Multi-version SkipMap with lock-free pinned readers
+ * Node<K,V> { K key; Node[] nexts; Version newest; }
+ * Version { long version; Object value; Version older; }
+ * Every write is stamped with the next version and pushed on the front of its key's chain, a deletion pushing
+ * a tombstone, and only then is the version committed. A Reader pins the committed version and sees, for each
+ * key, the newest entry of the chain not above it, so a scan is a point-in-time view however long it runs.
+ * Writers take the map lock. Readers take no lock: links are published with release stores and followed
+ * with acquire loads, towers are linked bottom up, and an unlinked node keeps its links, so a reader standing
+ * on it walks on. reclaim() cuts each chain below the entry visible at the oldest pinned version, and unlinks
+ * keys whose visible entry there is a tombstone with nothing newer.
+ */
+
+public class VersionedSkipMap<K,V> implements AutoCloseable {
+    private static final class Node<K,V> {
+        final K key;
+        final Node<K,V>[] nextArr;
+        volatile Version newest;
+
+        @SuppressWarnings("unchecked")
+        Node(K key, int depth) {
+            this.key = key;
+            nextArr = new Node[depth];
+        }
+    }
+
+    private static final class Version {
+        final long version;
+        final Object value;//TOMBSTONE for a deletion.
+        volatile Version older;
+
+        Version(long version, Object value, Version older) {
+            this.version = version;
+            this.value = value;
+            this.older = older;
+        }
+    }
+
+    /**
+     * A point-in-time view of the map, pinned until closed. Readers are not thread-safe, but any number may
+     * be open at once, in any threads.
+     */
+    public final class Reader implements AutoCloseable, Iterable<Map.Entry<K,V>> {
+        private final long version;
+        private boolean closed;
+
+        private Reader(long version) {
+            this.version = version;
+        }
+
+        /**
+         * @return the version this reader sees
+         */
+        public long version() {
+            return version;
+        }
+
+        public V get(Object key) {
+            checkOpen();
+            Node<K,V> n = find(key);
+            return n == null ? null : valueAt(n, version);
+        }
+
+        public boolean containsKey(Object key) {
+            checkOpen();
+            Node<K,V> n = find(key);
+            return n != null && valueAt(n, version) != null;
+        }
+
+        /**
+         * @return the entries with keys in [fromKey, toKey) as of this reader's version, a null bound being unbounded
+         */
+        public Iterator<Map.Entry<K,V>> scan(K fromKey, K toKey) {
+            checkOpen();
+            Node<K,V> start = fromKey == null ? next(head, 0) : ceiling(fromKey);
+            return new Iterator<>() {
+                Node<K,V> curNode = start;
+                Version curVersion = advance();
+
+                /**
+                 * Skips to the first node with a live entry at this version, returning that entry.
+                 */
+                private Version advance() {
+                    for (; curNode != null && (toKey == null || compare(curNode.key, toKey) < 0); curNode = VersionedSkipMap.next(curNode, 0)) {
+                        Version v = visible(curNode, version);
+                        if(v != null && v.value != TOMBSTONE) {
+                            return v;
+                        }
+                    }
+                    curNode = null;
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return curNode != null;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Map.Entry<K,V> next() {
+                    if(curNode == null) {
+                        throw new NoSuchElementException();
+                    }
+                    checkOpen();
+                    Map.Entry<K,V> e = new AbstractMap.SimpleImmutableEntry<>(curNode.key, (V) curVersion.value);
+                    curNode = VersionedSkipMap.next(curNode, 0);
+                    curVersion = advance();
+                    return e;
+                }
+            };
+        }
+
+        @Override
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return scan(null, null);
+        }
+
+        /**
+         * Unpins the version, letting reclaim() drop the entries only this reader could see. Closing twice does nothing.
+         */
+        @Override
+        public void close() {
+            if(!closed) {
+                closed = true;
+                unpin(version);
+            }
+        }
+
+        private void checkOpen() {
+            if(closed) {
+                throw new IllegalStateException("Reader closed");
+            }
+        }
+    }
+
+    private static final Object TOMBSTONE = new Object();
+    //Ends a chain that reclaim() has cut, as opposed to one reaching back to the key's first write.
+    private static final Version PRUNED = new Version(Long.MIN_VALUE, TOMBSTONE, null);
+    private static final VarHandle NEXT = MethodHandles.arrayElementVarHandle(Node[].class);
+    private static final int MAX_DEPTH = 32;
+    private static final Random RANDOM = new Random();
+
+    private final Node<K,V> head = new Node<>(null, MAX_DEPTH);
+    //Guarded by this.
+    private long nextVersion = 1;
+    private volatile long committed;
+    private volatile int size;
+    //Pinned versions and their reader counts. Guarded by itself, as pinning must not race the oldest pin.
+    private final SkipMap<Long,Integer> pins = new SkipMap<>();
+    private final ScheduledExecutorService reclaimer;
+
+    public VersionedSkipMap() {
+        reclaimer = null;
+    }
+
+    /**
+     * Constructs an empty map whose superseded entries are reclaimed in the background.
+     * @param period the time between two reclaim() passes
+     */
+    public VersionedSkipMap(long period, TimeUnit unit) {
+        if(period <= 0) {
+            throw new IllegalArgumentException("Period: " + period);
+        }
+        reclaimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "VersionedSkipMap-reclaimer");
+            t.setDaemon(true);
+            return t;
+        });
+        reclaimer.scheduleWithFixedDelay(this::reclaim, period, period, unit);
+    }
+
+    //region Read
+    /**
+     * @return the latest committed version
+     */
+    public long version() {
+        return committed;
+    }
+
+    /**
+     * @return the number of keys at the latest version
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value at the latest version, without pinning it
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Node<K,V> n = find(key);
+        if(n == null) {
+            return null;
+        }
+        Version v = latest(n, committed);
+        return v == null || v.value == TOMBSTONE ? null : (V) v.value;
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Pins the latest version for a consistent view until the reader is closed.
+     */
+    public Reader openReader() {
+        synchronized (pins) {
+            long version = committed;
+            pins.merge(version, 1, Integer::sum);
+            return new Reader(version);
+        }
+    }
+
+    private void unpin(long version) {
+        synchronized (pins) {
+            pins.computeIfPresent(version, (v, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    /**
+     * @return the oldest version a reader may still see
+     */
+    private long oldestPin() {
+        synchronized (pins) {
+            return pins.isEmpty() ? committed : pins.firstKey();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K,V> Node<K,V> next(Node<K,V> n, int i) {
+        return (Node<K,V>) NEXT.getAcquire(n.nextArr, i);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private Node<K,V> find(Object key) {
+        Node<K,V> n = ceiling(key);
+        return n != null && compare(n.key, key) == 0 ? n : null;
+    }
+
+    /**
+     * @return the first node whose key is not less than key
+     */
+    private Node<K,V> ceiling(Object key) {
+        Node<K,V> curNode = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            for (Node<K,V> next = next(curNode, i); next != null && compare(next.key, key) < 0; next = next(curNode, i)) {
+                curNode = next;
+            }
+        }
+        return next(curNode, 0);
+    }
+
+    /**
+     * @return the newest entry of n at or below version, or null if n did not exist then
+     */
+    private static Version visible(Node<?,?> n, long version) {
+        Version v = n.newest;
+        while (v != null && v.version > version) {
+            v = v.older;
+        }
+        return v;
+    }
+
+    /**
+     * Like visible(), but for an unpinned version that reclaim() may have cut away, in which case the oldest
+     * entry kept is returned. It is committed, and newer than version.
+     */
+    private static Version latest(Node<?,?> n, long version) {
+        Version v = n.newest;
+        while (v.version > version) {
+            Version older = v.older;
+            if(older == null) {
+                return null;
+            } else if(older == PRUNED) {
+                return v;
+            }
+            v = older;
+        }
+        return v;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(Node<K,V> n, long version) {
+        Version v = visible(n, version);
+        return v == null || v.value == TOMBSTONE ? null : (V) v.value;
+    }
+    //endregion
+
+    //region Write
+    /**
+     * Writes value as a new version of key.
+     * @return the value at the previous version
+     */
+    public synchronized V put(K key, V value) {
+        Objects.requireNonNull(value);
+        return write(key, value);
+    }
+
+    /**
+     * Writes a deletion of key as a new version, leaving older readers its previous value.
+     * @return the value at the previous version
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(Object key) {
+        Node<K,V> n = find(key);
+        if(n == null || n.newest.value == TOMBSTONE) {
+            return null;
+        }
+        return write((K) key, TOMBSTONE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V write(K key, Object value) {
+        long version = nextVersion++;
+        Node<K,V>[] preds = new Node[MAX_DEPTH];
+        Node<K,V> curNode = head;
+        for (int i = MAX_DEPTH - 1; i >= 0; i--) {
+            for (Node<K,V> next = next(curNode, i); next != null && compare(next.key, key) < 0; next = next(curNode, i)) {
+                curNode = next;
+            }
+            preds[i] = curNode;
+        }
+        Node<K,V> n = next(curNode, 0);
+        Object oldValue = TOMBSTONE;
+        if(n != null && compare(n.key, key) == 0) {
+            oldValue = n.newest.value;
+            n.newest = new Version(version, value, n.newest);
+        } else {
+            n = new Node<>(key, Math.min(Integer.numberOfTrailingZeros(RANDOM.nextInt()) + 1, MAX_DEPTH));
+            n.newest = new Version(version, value, null);
+            //Bottom up, so a node reachable on a row is already on every row below it.
+            for (int i = 0; i < n.nextArr.length; i++) {
+                n.nextArr[i] = next(preds[i], i);
+                NEXT.setRelease(preds[i].nextArr, i, n);
+            }
+        }
+        if(oldValue == TOMBSTONE && value != TOMBSTONE) {
+            size++;
+        } else if(oldValue != TOMBSTONE && value == TOMBSTONE) {
+            size--;
+        }
+        committed = version;
+        return oldValue == TOMBSTONE ? null : (V) oldValue;
+    }
+    //endregion
+
+    //region Reclaim
+    /**
+     * Drops every entry hidden from all open readers and from the latest version, and unlinks the keys left
+     * with only a deletion. Writers wait for the pass, which is O(n); readers do not.
+     * @return the number of entries dropped
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized int reclaim() {
+        long oldest = oldestPin();
+        int dropped = 0;
+        //Per row, the last node kept before the current one.
+        Node<K,V>[] preds = new Node[MAX_DEPTH];
+        Arrays.fill(preds, head);
+        for (Node<K,V> n = next(head, 0); n != null; n = next(n, 0)) {
+            Version v = visible(n, oldest);
+            if(v == null) {
+                for (int i = 0; i < n.nextArr.length; i++) {
+                    preds[i] = n;
+                }
+                continue;
+            }
+            if(v.older != null && v.older != PRUNED) {
+                for (Version older = v.older; older != PRUNED && older != null; older = older.older) {
+                    dropped++;
+                }
+                v.older = PRUNED;
+            }
+            if(v.value == TOMBSTONE && n.newest == v) {
+                dropped++;
+                //Top down, leaving n's own links for any reader standing on it.
+                for (int i = n.nextArr.length - 1; i >= 0; i--) {
+                    NEXT.setRelease(preds[i].nextArr, i, next(n, i));
+                }
+            } else {
+                for (int i = 0; i < n.nextArr.length; i++) {
+                    preds[i] = n;
+                }
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Stops the background reclaimer, if any. The map remains usable.
+     */
+    @Override
+    public void close() {
+        if(reclaimer != null) {
+            reclaimer.shutdown();
+        }
+    }
+    //endregion
+}